@@ -0,0 +1,105 @@
+package org.regin.creator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Synthetic miRNA - gene interaction files in the format of the
+ * example config. About a quarter of the rows repeat an earlier
+ * source - target pair and some fields contain characters that
+ * have to be escaped or removed in XGMML.
+ * @author Thomas
+ *
+ */
+class BenchmarkData {
+
+	final static String [] HEADER = {"mirna", "mirlabel", "gene", "genelabel", "score", "pvalue", "support"};
+	private final static int MIRNAS = 100;
+
+	/**
+	 * BridgeDb Derby file for the benchmarks with bridgedb=derby, 
+	 * set with -Dregin.bridgedb
+	 */
+	static File getBridgeDb() {
+		String path = System.getProperty("regin.bridgedb", "");
+		if(path.equals("")) {
+			throw new IllegalStateException("-Dregin.bridgedb is not set");
+		}
+		File file = new File(path);
+		if(!file.exists()) {
+			throw new IllegalStateException("BridgeDb file " + path + " does not exist");
+		}
+		return file;
+	}
+
+	/**
+	 * Ensembl id of a gene in the format of org.regin.script.GenerateWorkload,
+	 * so its database (--bridgedb true) can be used with -Dregin.bridgedb
+	 */
+	static String geneId(int gene) {
+		return String.format("ENSG%011d", gene);
+	}
+
+	static String [] row(int i, int rows) {
+		int pair = i % Math.max(1, rows * 3 / 4);
+		int mirna = pair % MIRNAS;
+		int gene = pair / MIRNAS;
+		String support = i % 10 == 0 ? "strong & <weak>" : i % 97 == 0 ? "weak\u0001" : "strong";
+		return new String [] {
+				"hsa-mir-" + mirna, "miR" + mirna,
+				geneId(gene), "GENE" + gene,
+				"" + ((i * 7919) % 1000) / 1000.0, "" + ((i * 104729) % 10000) / 10000.0,
+				support};
+	}
+
+	static void writeInput(File file, int rows) throws IOException {
+		PrintWriter out = new PrintWriter(file, "UTF-8");
+		try {
+			out.println(join(HEADER));
+			for(int i = 0; i < rows; i++) {
+				out.println(join(row(i, rows)));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @param bridgeDb mapper for the target nodes, can be null
+	 */
+	static void writeConfig(File file, File bridgeDb) throws IOException {
+		PrintWriter out = new PrintWriter(file, "UTF-8");
+		try {
+			out.println("name=benchmark");
+			out.println("organism=hsa");
+			out.println("version=1");
+			out.println("source_columns=1");
+			out.println("target_columns=3");
+			out.println("edge_columns=4,5,6");
+			out.println("interaction_type=miRNA-target");
+			out.println("source_id_column=0");
+			out.println("source_type=miRNA");
+			out.println("source_label_column=1");
+			out.println("target_id_column=2");
+			out.println("target_type=gene");
+			out.println("target_label_column=3");
+			if(bridgeDb != null) {
+				out.println("target_bridgedb=" + bridgeDb.getAbsolutePath());
+				out.println("target_syscode_in=En");
+				out.println("target_syscodes_out=L,H");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	static String join(String [] fields) {
+		StringBuilder b = new StringBuilder();
+		for(int i = 0; i < fields.length; i++) {
+			if(i > 0) b.append('\t');
+			b.append(fields[i]);
+		}
+		return b.toString();
+	}
+}
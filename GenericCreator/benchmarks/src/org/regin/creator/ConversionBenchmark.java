@@ -0,0 +1,83 @@
+package org.regin.creator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Complete conversions from the command line (read, map, write and 
+ * log) of synthetic inputs of different sizes, without id mapping 
+ * and with the target nodes mapped with the Derby file given 
+ * with -Dregin.bridgedb.
+ * @author Thomas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConversionBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	public int rows;
+
+	@Param({"none", "derby"})
+	public String bridgedb;
+
+	private File dir;
+	private String [] args;
+
+	@Setup
+	public void setup() throws IOException {
+		dir = createDir();
+		File input = new File(dir, "input.txt");
+		File config = new File(dir, "input.config");
+		File output = new File(dir, "output.xgmml");
+		BenchmarkData.writeInput(input, rows);
+		BenchmarkData.writeConfig(config, bridgedb.equals("derby") ? BenchmarkData.getBridgeDb() : null);
+		args = new String [] {"-i", input.getPath(), "-c", config.getPath(), "-o", output.getPath()};
+	}
+
+	@TearDown
+	public void tearDown() {
+		delete(dir);
+	}
+
+	@Benchmark
+	public void convert() throws Exception {
+		GenericCreator.main(args);
+	}
+
+	static File createDir() throws IOException {
+		File dir = File.createTempFile("regin-bench", "");
+		if(!dir.delete() || !dir.mkdir()) {
+			throw new IOException("could not create " + dir);
+		}
+		return dir;
+	}
+
+	static void delete(File dir) {
+		File [] files = dir.listFiles();
+		if(files != null) {
+			for(File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+}
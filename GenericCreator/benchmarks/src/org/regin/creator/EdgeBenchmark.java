@@ -0,0 +1,86 @@
+package org.regin.creator;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.regin.creator.graph.Graph;
+import org.regin.creator.graph.Graph.Node;
+
+/**
+ * {@link GenericCreator#createEgde} for all rows of a synthetic 
+ * input, a quarter of the rows are duplicate edges. The nodes are 
+ * created before every invocation.
+ * @author Thomas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EdgeBenchmark {
+
+	@Param({"10000", "100000"})
+	public int rows;
+
+	private File config;
+	private String [][] data;
+	private GenericCreator creator;
+	private Node [] sources;
+	private Node [] targets;
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws Exception {
+		config = File.createTempFile("regin-bench", ".config");
+		BenchmarkData.writeConfig(config, null);
+		data = new String[rows][];
+		for(int i = 0; i < rows; i++) {
+			data[i] = BenchmarkData.row(i, rows);
+		}
+		sources = new Node[rows];
+		targets = new Node[rows];
+	}
+
+	@Setup(Level.Invocation)
+	public void setupInvocation() throws Exception {
+		creator = new GenericCreator();
+		Graph graph = creator.prepare(config, BenchmarkData.HEADER);
+		Map<String, Node> nodes = new HashMap<String, Node>();
+		for(int i = 0; i < rows; i++) {
+			sources[i] = getNode(graph, nodes, data[i][0]);
+			targets[i] = getNode(graph, nodes, data[i][2]);
+		}
+	}
+
+	private Node getNode(Graph graph, Map<String, Node> nodes, String id) {
+		Node node = nodes.get(id);
+		if(node == null) {
+			node = graph.addNode(id);
+			nodes.put(id, node);
+		}
+		return node;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		config.delete();
+	}
+
+	@Benchmark
+	public void createEdges(Blackhole bh) throws Exception {
+		for(int i = 0; i < rows; i++) {
+			bh.consume(creator.createEgde(sources[i], targets[i], data[i]));
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.regin.creator;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.regin.creator.graph.Graph;
+import org.regin.creator.graph.GraphWriter;
+import org.regin.creator.graph.GraphWriters;
+import org.regin.creator.graph.XGMMLReader;
+import org.regin.creator.graph.XGMMLWriter;
+import org.regin.creator.utils.Utils;
+
+/**
+ * Writes the network of a synthetic input as XGMML with 
+ * XMLStreamWriter ({@link XGMMLWriter#write}), with the byte 
+ * emitter on one thread and with the emitter on all processors.
+ * The emitter is only used if the JVM runs with -Dfile.encoding=UTF-8.
+ * @author Thomas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphWriterBenchmark {
+
+	@Param({"10000", "100000"})
+	public int rows;
+
+	private File dir;
+	private File output;
+	private Graph graph;
+
+	@Setup
+	public void setup() throws Exception {
+		dir = ConversionBenchmark.createDir();
+		File input = new File(dir, "input.txt");
+		File config = new File(dir, "input.config");
+		output = new File(dir, "output.xgmml");
+		BenchmarkData.writeInput(input, rows);
+		BenchmarkData.writeConfig(config, null);
+		GenericCreator.main(new String [] {"-i", input.getPath(), "-c", config.getPath(), "-o", output.getPath()});
+		graph = XGMMLReader.read(output);
+	}
+
+	@TearDown
+	public void tearDown() {
+		ConversionBenchmark.delete(dir);
+	}
+
+	@Benchmark
+	public void stax() throws Exception {
+		PrintWriter out = Utils.openWriter(output);
+		try {
+			XGMMLWriter.write(graph, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	@Benchmark
+	public void emitter() throws Exception {
+		write(new XGMMLWriter(1));
+	}
+
+	@Benchmark
+	public void emitterParallel() throws Exception {
+		write(new XGMMLWriter());
+	}
+
+	private void write(GraphWriter writer) throws Exception {
+		Map<GraphWriter, File> outputs = new HashMap<GraphWriter, File>();
+		outputs.put(writer, output);
+		GraphWriters.write(graph, outputs);
+	}
+}
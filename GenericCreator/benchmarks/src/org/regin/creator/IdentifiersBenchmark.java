@@ -0,0 +1,62 @@
+package org.regin.creator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bridgedb.IDMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.regin.creator.utils.Utils;
+
+/**
+ * One {@link GenericCreator#getIdentifiers} call (a BridgeDb query 
+ * for every output system code) against the Derby file given with 
+ * -Dregin.bridgedb. The identifiers cycle through 10000 Ensembl ids.
+ * @author Thomas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdentifiersBenchmark {
+
+	private final static int IDS = 10000;
+	private final static List<String> SYSCODES_OUT = Arrays.asList("L", "H");
+
+	private IDMapper mapper;
+	private GenericCreator creator;
+	private String [] ids;
+	private int next;
+
+	@Setup
+	public void setup() {
+		mapper = Utils.initIDMapper(BenchmarkData.getBridgeDb(), false);
+		if(mapper == null) {
+			throw new IllegalStateException("could not open " + BenchmarkData.getBridgeDb());
+		}
+		creator = new GenericCreator();
+		ids = new String[IDS];
+		for(int i = 0; i < IDS; i++) {
+			ids[i] = BenchmarkData.geneId(i);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		mapper.close();
+	}
+
+	@Benchmark
+	public String getIdentifiers() throws Exception {
+		String id = ids[next];
+		next = (next + 1) % IDS;
+		return creator.getIdentifiers(id, "En", SYSCODES_OUT, mapper);
+	}
+}
@@ -0,0 +1,66 @@
+package org.regin.creator;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.regin.creator.utils.TabTokenizer;
+import org.regin.creator.utils.Utils;
+
+/**
+ * Splitting of the input lines and removal of invalid XML 
+ * characters, for 1000 synthetic lines per invocation.
+ * @author Thomas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+
+	private final static int LINES = 1000;
+	
+	private String [] lines;
+	private String [] fields;
+	private TabTokenizer tokenizer;
+
+	@Setup
+	public void setup() {
+		lines = new String[LINES];
+		fields = new String[LINES * BenchmarkData.HEADER.length];
+		for(int i = 0; i < LINES; i++) {
+			String [] row = BenchmarkData.row(i, LINES);
+			lines[i] = BenchmarkData.join(row);
+			System.arraycopy(row, 0, fields, i * row.length, row.length);
+		}
+		tokenizer = new TabTokenizer(Arrays.asList(0, 1, 2, 3, 4, 5, 6));
+	}
+
+	@Benchmark
+	public void split(Blackhole bh) {
+		for(String line : lines) {
+			bh.consume(line.split("\t"));
+		}
+	}
+
+	@Benchmark
+	public void tokenize(Blackhole bh) {
+		for(String line : lines) {
+			bh.consume(tokenizer.tokenize(line));
+		}
+	}
+
+	@Benchmark
+	public void removeInvalidXMLCharacters(Blackhole bh) {
+		for(String field : fields) {
+			bh.consume(Utils.removeInvalidXMLCharacters(field));
+		}
+	}
+}
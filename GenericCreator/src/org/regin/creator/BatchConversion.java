@@ -0,0 +1,201 @@
+package org.regin.creator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperException;
+import org.regin.creator.utils.ArgsParser.AFilesIn;
+import org.regin.creator.utils.ArgsParser.AFilesOut;
+import org.regin.creator.utils.CachedIDMapper;
+import org.regin.creator.utils.IDMapperPool;
+import org.regin.creator.utils.Utils;
+
+/**
+ * Runs the conversions listed in a manifest file in one JVM on a
+ * bounded number of threads. Jobs that use the same BridgeDb file
+ * share one (thread-safe) id mapper. The processors are shared between
+ * the jobs, each output file is compressed and rendered with
+ * max(1, processors / jobs) threads.
+ *
+ * Manifest: one job per line, input file, config file and output
+ * file separated by tabs. Empty lines and lines starting with # are
+ * ignored. Relative paths are resolved against the manifest directory.
+ *
+ * A summary with the status and run time of every job is written
+ * to manifest + ".summary".
+ * @author Thomas
+ *
+ */
+public class BatchConversion {
+	private final static Logger log = Logger.getLogger(BatchConversion.class.getName());
+
+	private File manifest;
+	private int jobs;
+	private File cacheDir;
+	private int connections;
+	private Map<File, IDMapper> mappers;
+
+	/**
+	 * @param cacheDir directory of the mapping cache, can be null
+	 */
+	public BatchConversion(File manifest, int jobs, File cacheDir, int connections) {
+		this.manifest = manifest;
+		this.jobs = jobs;
+		this.cacheDir = cacheDir;
+		this.connections = connections;
+		mappers = new HashMap<File, IDMapper>();
+	}
+
+	public class Job implements AFilesIn, AFilesOut {
+		File input;
+		File config;
+		File output;
+		boolean converted = false;
+		long time;
+		int nodes;
+		int edges;
+
+		public File getInput() { return input; }
+		public boolean isInput() { return input != null; }
+		public File getConfig() { return config; }
+		public boolean isConfig() { return config != null; }
+		public File getOutput() { return output; }
+		public boolean isOutput() { return output != null; }
+	}
+
+	public List<Job> readManifest() throws IOException {
+		List<Job> list = new ArrayList<Job>();
+		File dir = manifest.getAbsoluteFile().getParentFile();
+		BufferedReader reader = new BufferedReader(new FileReader(manifest));
+		String line;
+		while((line = reader.readLine()) != null) {
+			if(line.trim().equals("") || line.startsWith("#")) continue;
+			String [] split = line.split("\t");
+			if(split.length == 3) {
+				Job job = new Job();
+				job.input = resolve(dir, split[0]);
+				job.config = resolve(dir, split[1]);
+				job.output = resolve(dir, split[2]);
+				list.add(job);
+			} else {
+				System.out.println("invalid job\t" + line);
+			}
+		}
+		reader.close();
+		return list;
+	}
+
+	private File resolve(File dir, String path) {
+		File file = new File(path.trim());
+		return file.isAbsolute() ? file : new File(dir, path.trim());
+	}
+
+	public void run(final boolean stream) throws Exception {
+		List<Job> list = readManifest();
+		log.info("Running " + list.size() + " conversions on " + jobs + " threads, " + 
+				getOutputThreads() + " output threads per conversion.\n");
+		long start = System.currentTimeMillis();
+
+		ExecutorService executor = Executors.newFixedThreadPool(jobs);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for(int i = 0; i < list.size(); i++) {
+			final Job job = list.get(i);
+			final String name = i + "." + job.input.getName();
+			futures.add(executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					runJob(job, name, stream);
+					return null;
+				}
+			}));
+		}
+		try {
+			for(Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		closeMappers();
+
+		writeSummary(list, System.currentTimeMillis() - start);
+	}
+
+	private void runJob(Job job, String name, boolean stream) {
+		long start = System.currentTimeMillis();
+		try {
+			if(job.input.exists() && job.config.exists()) {
+				GenericCreator creator = new GenericCreator(name, job.config, this);
+				creator.convertAndWrite(job, job, stream);
+				job.converted = creator.isConverted();
+				job.nodes = creator.getNodeCount();
+				job.edges = creator.getEdgeCount();
+			} else {
+				log.warning("Input or config file of " + name + " does not exist.\n");
+			}
+		} catch (Exception e) {
+			log.severe("Conversion " + name + " failed: " + e.getMessage());
+		}
+		job.time = System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * threads that compress or render one output file of a job
+	 */
+	int getOutputThreads() {
+		return Math.max(1, Utils.getOutputThreads() / jobs);
+	}
+
+	/**
+	 * one thread-safe mapper per BridgeDb file that is shared by all jobs,
+	 * with the mapping cache if a cache directory is set
+	 */
+	synchronized IDMapper getMapper(File bridgeDb) throws IDMapperException, IOException {
+		File file = bridgeDb.getAbsoluteFile();
+		IDMapper mapper = mappers.get(file);
+		if(mapper == null) {
+			mapper = new IDMapperPool(file, Math.max(1, connections));
+			if(cacheDir != null) {
+				mapper = new CachedIDMapper(file, cacheDir, mapper);
+			}
+			mappers.put(file, mapper);
+		}
+		return mapper;
+	}
+
+	private synchronized void closeMappers() {
+		for(IDMapper mapper : mappers.values()) {
+			try {
+				mapper.close();
+			} catch (IDMapperException e) {
+				log.warning("Could not close id mapper: " + e.getMessage());
+			}
+		}
+		mappers.clear();
+	}
+
+	private void writeSummary(List<Job> list, long total) throws IOException {
+		File summary = new File(manifest.getAbsolutePath() + ".summary");
+		PrintWriter out = new PrintWriter(summary);
+		out.println("input\tconfig\toutput\tstatus\tseconds\tnodes\tedges");
+		for(Job job : list) {
+			out.println(job.input.getPath() + "\t" + job.config.getPath() + "\t" + job.output.getPath() + "\t" +
+					(job.converted ? "done" : "failed") + "\t" + (job.time / 1000.0) + "\t" + job.nodes + "\t" + job.edges);
+		}
+		out.println("total\t\t\t\t" + (total / 1000.0) + "\t\t");
+		out.close();
+		log.info("Batch conversion done in " + (total / 1000.0) + " s, summary written to " + summary.getName() + ".\n");
+	}
+}
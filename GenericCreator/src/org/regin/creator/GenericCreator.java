@@ -3,14 +3,22 @@ package org.regin.creator;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.bridgedb.DataSource;
 import org.bridgedb.IDMapper;
 import org.bridgedb.IDMapperException;
@@ -18,161 +26,721 @@ import org.bridgedb.Xref;
 import org.regin.creator.graph.Graph;
 import org.regin.creator.graph.Graph.Edge;
 import org.regin.creator.graph.Graph.Node;
+import org.regin.creator.graph.GraphWriters;
+import org.regin.creator.graph.XGMMLStreamWriter;
 import org.regin.creator.utils.ArgsParser;
+import org.regin.creator.utils.ArgsParser.ABatch;
+import org.regin.creator.utils.ArgsParser.ACache;
+import org.regin.creator.utils.ArgsParser.ABulk;
+import org.regin.creator.utils.ArgsParser.AConnections;
 import org.regin.creator.utils.ArgsParser.AFilesIn;
 import org.regin.creator.utils.ArgsParser.AFilesOut;
+import org.regin.creator.utils.ArgsParser.AFormat;
 import org.regin.creator.utils.ArgsParser.AHelp;
+import org.regin.creator.utils.ArgsParser.AIncremental;
+import org.regin.creator.utils.ArgsParser.AMerge;
+import org.regin.creator.utils.ArgsParser.AParallel;
+import org.regin.creator.utils.ArgsParser.ARecording;
+import org.regin.creator.utils.ArgsParser.ASorted;
+import org.regin.creator.utils.ArgsParser.AStream;
+import org.regin.creator.utils.ArgsParser.ATrace;
 import org.regin.creator.utils.ArgsParser.GraphBuilder;
+import org.regin.creator.utils.ArgsParser.GraphStreamer;
+import org.regin.creator.utils.AsyncIDMapper;
+import org.regin.creator.utils.BulkIDMapper;
+import org.regin.creator.utils.CachedIDMapper;
+import org.regin.creator.utils.ChunkedFileReader;
+import org.regin.creator.utils.ChunkedFileReader.LineParser;
+import org.regin.creator.utils.ChunkedFileReader.RowHandler;
 import org.regin.creator.utils.ConfigAttributes;
 import org.regin.creator.utils.ConfigFileReader;
+import org.regin.creator.utils.ConversionMetrics;
+import org.regin.creator.utils.DeltaIndex;
+import org.regin.creator.utils.Diagnostics;
+import org.regin.creator.utils.DeltaIndex.Mapping;
+import org.regin.creator.utils.FlightRecorder;
+import org.regin.creator.utils.LazyIDMapper;
+import org.regin.creator.utils.LongIntHashMap;
+import org.regin.creator.utils.SharedIDMapper;
+import org.regin.creator.utils.TabTokenizer;
 import org.regin.creator.utils.Utils;
 
 public class GenericCreator {
-	private final static Logger log = Logger.getLogger(GenericCreator.class.getName());
+	private final Logger log;
 	static Args pargs;
-	private interface Args extends AHelp, AFilesIn, AFilesOut {}
+	private interface Args extends AHelp, AFilesIn, AFilesOut, AStream, AParallel, ACache, ABulk, AConnections, ABatch, AMerge, AIncremental, AFormat, ASorted, ARecording, ATrace {}
 	
 	/**
 	 * ARGUMENTS: 
 	 * -i = input file
 	 * -o = output file
 	 * -c = config file
+	 * --stream = write the network while reading the input file
+	 * --threads = number of threads used to parse the input file
+	 * --cache = directory of the persistent id mapping cache
+	 * --bulk = map all identifiers in batches before creating the network
+	 * --connections = number of connections per BridgeDb database
+	 * --batch = manifest file with several conversions
+	 * --jobs = number of conversions that run at the same time
+	 * --merge = manifest file with several sources that are merged into one network (-o)
+	 * --incremental = rebuild the network with the index of the previous build
+	 * --format = comma separated output formats (xgmml, regin, sif, tsv)
+	 * --sorted = write nodes and edges ordered by id with a stable graph id
+	 * --trace = write every created node and its aliases to the log file
+	 * --jfr = file to which a JDK Flight Recorder recording of the conversion is written
 	 */
 	public static void main(String argv[]) throws Exception {
 
 		pargs = ArgsParser.parse(argv, Args.class);
 
-		GenericCreator converter = new GenericCreator();
-		converter.startConversion(pargs);
+		Object recording = pargs.isRecording() ? FlightRecorder.start(pargs.getRecording()) : null;
+		try {
+			if(pargs.isBatch()) {
+				int jobs = pargs.getJobs() > 0 ? pargs.getJobs() : Runtime.getRuntime().availableProcessors();
+				BatchConversion batch = new BatchConversion(pargs.getBatch(), jobs, pargs.isCache() ? pargs.getCache() : null, pargs.getConnections());
+				batch.run(pargs.getStream());
+			} else if(pargs.isMerge()) {
+				GenericCreator converter = new GenericCreator();
+				converter.startMerge(pargs);
+			} else {
+				GenericCreator converter = new GenericCreator();
+				converter.startConversion(pargs);
+			}
+		} finally {
+			FlightRecorder.stop(recording);
+		}
 	}
 
 	private Graph graph;
-	private Map<String, List<String>> edges;
+	private LongIntHashMap edges;
 
-	private List<String> foundConnections;
 	private Integer countEdges = 0;
 	private Integer countTrg = 0;
 	private Integer countSrc = 0;
 	
 	private Map<String, Node> nodes;
 
+	private File config;
+	private BatchConversion batch;
+	private int sourceCount = 0;
+	private boolean converted = false;
+
 	public GenericCreator() {
-		edges = new HashMap<String, List<String>>();
-		foundConnections = new ArrayList<String>();
+		log = Logger.getLogger(GenericCreator.class.getName());
+		edges = new LongIntHashMap();
 		nodes = new HashMap<String, Graph.Node>();
 	}
+	
+	/**
+	 * conversion that is part of a batch, id mappers 
+	 * are shared with the other conversions of the batch
+	 */
+	GenericCreator(String name, File config, BatchConversion batch) {
+		log = Logger.getLogger(GenericCreator.class.getName() + "." + name);
+		edges = new LongIntHashMap();
+		nodes = new HashMap<String, Graph.Node>();
+		this.config = config;
+		this.batch = batch;
+	}
 
 	public void startConversion(Args pargs) throws Exception {
 		if(pargs.isInput() && pargs.isConfig() && pargs.isOutput()) {
 			File in = pargs.getInput();
-			File config = pargs.getConfig();
-			if(in.exists() && config.exists()) {				
-				ArgsParser.convertAndWrite(pargs, pargs, new GraphBuilder() {
-					public Graph buildGraph(File in) throws Exception {
-						return convert(in);
-					}
-				});
+			config = pargs.getConfig();
+			if(in.exists() && config.exists()) {
+				if(pargs.getIncremental()) {
+					convertIncremental(pargs);
+				} else {
+					convertAndWrite(pargs, pargs, pargs.getStream());
+				}
 			}
 		} else {
 			System.out.println("check paramters. at least one parameter is missing.");
 		}
 	}
 	
+	/**
+	 * compares the input rows with the index of the previous build 
+	 * (output + ".index"). An unchanged input keeps the previous output, 
+	 * otherwise the network is rebuilt and only identifiers that are 
+	 * not in the index are mapped with BridgeDb. The comparison stops 
+	 * at the first changed row, the fingerprints of the new index are 
+	 * taken from the rows of the conversion.
+	 */
+	private void convertIncremental(Args pargs) throws Exception {
+		File indexFile = new File(pargs.getOutput().getAbsolutePath() + ".index");
+		ConfigAttributes ca = ConfigFileReader.readFile(config);
+		String formats = pargs.isFormat() ? pargs.getFormat() : null;
+		// output options change the files, a build with other options can not be kept
+		String stamp = DeltaIndex.stamp(config, ca.getSourceBridgeDb(), ca.getTargetBridgeDb()) + 
+				"|sorted=" + pargs.getSorted() + "|stream=" + pargs.getStream() + "|format=" + formats;
+		deltaIndex = new DeltaIndex(stamp, pargs.getInput());
+		previousIndex = DeltaIndex.read(indexFile);
+		if(previousIndex == null) {
+			log.info("No index of a previous build found, full build.\n");
+		} else if(!deltaIndex.isCompatible(previousIndex)) {
+			log.info("Config, BridgeDb file or output options changed since the previous build, full build.\n");
+			previousIndex = null;
+		} else if(outputsExist(pargs.getOutput(), formats) && previousIndex.hasSameRows(pargs.getInput(), ca.getColumns())) {
+			log.info("Input unchanged, " + pargs.getOutput() + " is up to date.\n");
+			converted = true;
+			return;
+		}
+		log.info("The network is rebuilt from all rows, only identifiers that are not in the index are mapped.\n");
+		convertAndWrite(pargs, pargs, pargs.getStream());
+		if(converted) {
+			if(previousIndex != null) {
+				int [] diff = deltaIndex.diff(previousIndex);
+				log.info(diff[0] + " rows added and " + diff[1] + " rows removed since the previous build.\n");
+			}
+			deltaIndex.write(indexFile);
+		}
+		previousIndex = null;
+	}
+	
+	private boolean outputsExist(File output, String formats) {
+		for(File f : GraphWriters.getWriters(output, formats).values()) {
+			if(!f.exists()) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * merge manifest: one source per line, input file and config
+	 * file separated by a tab, relative paths are resolved against
+	 * the manifest directory
+	 */
+	public void startMerge(Args pargs) throws Exception {
+		final File manifest = pargs.getMerge();
+		if(pargs.getStream()) {
+			System.out.println("--stream is ignored in merge mode.");
+		}
+		final List<File[]> sources = new ArrayList<File[]>();
+		File dir = manifest.getAbsoluteFile().getParentFile();
+		BufferedReader reader = new BufferedReader(new FileReader(manifest));
+		String line;
+		while((line = reader.readLine()) != null) {
+			if(line.trim().equals("") || line.startsWith("#")) continue;
+			String [] split = line.split("\t");
+			File input = split.length == 2 ? resolve(dir, split[0]) : null;
+			File config = split.length == 2 ? resolve(dir, split[1]) : null;
+			if(input != null && input.exists() && config.exists()) {
+				sources.add(new File[] {input, config});
+			} else {
+				System.out.println("invalid source\t" + line);
+			}
+		}
+		reader.close();
+		
+		metrics = new ConversionMetrics();
+		ArgsParser.convertAndWrite(new AFilesIn() {
+			public File getInput() { return manifest; }
+			public boolean isInput() { return true; }
+			public File getConfig() { return null; }
+			public boolean isConfig() { return false; }
+		}, pargs, pargs.isFormat() ? pargs.getFormat() : null, pargs.getSorted(), new GraphBuilder() {
+			public Graph buildGraph(File in) throws Exception {
+				Graph g = merge(sources, new File(in.getAbsolutePath() + ".log"));
+				metrics.start("write");
+				return g;
+			}
+		});
+		writeMetrics(new File(manifest.getAbsolutePath() + ".metrics.json"), pargs);
+	}
+	
+	private File resolve(File dir, String path) {
+		File file = new File(path.trim());
+		return file.isAbsolute() ? file : new File(dir, path.trim());
+	}
+	
+	void convertAndWrite(AFilesIn fi, AFilesOut fo, boolean stream) throws Exception {
+		String formats = pargs.isFormat() ? pargs.getFormat() : null;
+		if(stream && !ArgsParser.canStream(fo, formats)) {
+			log.warning("The output format can not be streamed, the network is created in memory.\n");
+			stream = false;
+		}
+		metrics = new ConversionMetrics();
+		// the jobs of a batch share the processors
+		int threads = batch == null ? Utils.getOutputThreads() : batch.getOutputThreads();
+		if(stream) {
+			ArgsParser.convertAndStream(fi, fo, threads, new GraphStreamer() {
+				public boolean streamGraph(File in, PrintWriter out) throws Exception {
+					convert(in, out);
+					return converted;
+				}
+			});
+		} else {
+			ArgsParser.convertAndWrite(fi, fo, formats, pargs.getSorted(), threads, new GraphBuilder() {
+				public Graph buildGraph(File in) throws Exception {
+					Graph g = convert(in);
+					metrics.start("write");
+					return g;
+				}
+			});
+		}
+		File input = fi.getInput();
+		writeMetrics(new File(input.getParentFile(), input.getName() + ".metrics.json"), fo);
+	}
+	
+	/**
+	 * writes the report of the conversion next to the log file
+	 */
+	private void writeMetrics(File file, AFilesOut fo) {
+		if(!converted) return;
+		if(fo.isOutput()) {
+			metrics.setOutput(fo.getOutput());
+		}
+		metrics.setCounts(countEdges, countSrc, countTrg);
+		try {
+			metrics.write(file);
+		} catch (IOException e) {
+			log.warning("Could not write metrics " + file.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+	
+	public boolean isConverted() {
+		return converted;
+	}
+	
+	public int getEdgeCount() {
+		return countEdges;
+	}
+	
+	public int getNodeCount() {
+		return countSrc + countTrg;
+	}
+	
 	private ConfigAttributes attr;
 	private String networkName;
 	private IDMapper sourceIdMapper;
 	private IDMapper targetIdMapper;
 	private String [] header;	
 	private int nomimat = 0;
+	private XGMMLStreamWriter streamWriter;
+	private ThreadLocal<TabTokenizer> tokenizers;
+	private DeltaIndex deltaIndex;
+	private DeltaIndex previousIndex;
+	private int newMappings = 0;
+	private ConversionMetrics metrics = new ConversionMetrics();
+	private Diagnostics diagnostics;
+	private List<CachedIDMapper> caches = new ArrayList<CachedIDMapper>();
+	private final static int ROW_BATCH = 10000;
+	private Object rowEvent;
+	private int rowBatchStart;
+	private int rowBatchSize = 0;
 	
 	public Graph convert(File input) {
+		return convert(input, null);
+	}
+	
+	/**
+	 * if out is not null nodes are written as soon as they
+	 * are created and edges are not kept in the graph
+	 */
+	public Graph convert(File input, PrintWriter out) {
 		graph = new Graph();
+		FileHandler logHandler = null;
 		try {
-			Utils.setUpLogger(log, new File(input.getParentFile(), input.getName() + ".log"), true);
-			
-			log.info("Read config file.\n");
-			attr = ConfigFileReader.readFile(pargs.getConfig());
-			networkName = getNetworkName();
+			logHandler = Utils.setUpLogger(log, new File(input.getParentFile(), input.getName() + ".log"), true);
+			diagnostics = new Diagnostics(log, pargs.getTrace());
+			addSource(input, config, out);
+			converted = true;
+		} catch (Exception e) {
+			log.severe("Could not convert file to RegIN: " + e.getMessage());
+			e.printStackTrace();
+		}
+		closeDiagnostics();
+		edges.clear();
+		nodes.clear();
+		streamWriter = null;
+		if(logHandler != null) {
+			log.removeHandler(logHandler);
+			logHandler.close();
+		}
+		return graph;
+	}
+	
+	/**
+	 * logs the remaining warnings and their summary 
+	 * before the log file is closed
+	 */
+	private void closeDiagnostics() {
+		if(diagnostics == null) return;
+		diagnostics.close();
+		for(String category : diagnostics.getCategories()) {
+			metrics.addWarnings(category, diagnostics.getCount(category));
+		}
+		diagnostics = null;
+	}
+	
+	/**
+	 * adds all sources (input and config file) to one network. 
+	 * Nodes of different sources are unified with the id/alias registry, 
+	 * the datasource of an edge lists every source that contains it.
+	 */
+	public Graph merge(List<File[]> sources, File logFile) {
+		graph = new Graph();
+		FileHandler logHandler = null;
+		try {
+			logHandler = Utils.setUpLogger(log, logFile, true);
+			diagnostics = new Diagnostics(log, pargs.getTrace());
+			for(File [] source : sources) {
+				addSource(source[0], source[1], null);
+			}
+			log.info("merged " + sources.size() + " sources into " + graph.getTitle() + ".\n");
+			converted = true;
+		} catch (Exception e) {
+			log.severe("Could not merge files to RegIN: " + e.getMessage());
+			e.printStackTrace();
+		}
+		closeDiagnostics();
+		edges.clear();
+		nodes.clear();
+		if(logHandler != null) {
+			log.removeHandler(logHandler);
+			logHandler.close();
+		}
+		return graph;
+	}
+	
+	/**
+	 * reads one input file with its config file into the current graph
+	 */
+	private void addSource(File input, File config, PrintWriter out) throws Exception {
+		try {
+			metrics.start("config");
+			readConfig(config);
 			log.info("Conversion of " + networkName + " started.\n");
+			metrics.setNetwork(networkName, input);
+			sourceCount++;
 
 			setNetworkAttributes(input);
+			metrics.start("mappers");
 			setUpIdMappers();
+			if(out != null) {
+				// edges are only written, not stored in the graph
+				graph.setStoreEdges(false);
+				streamWriter = new XGMMLStreamWriter(graph, out, pargs.getSorted());
+			}
 			
-			BufferedReader reader = new BufferedReader(new FileReader(input));
-			
+			BufferedReader reader = Utils.openReader(input);
 			header = reader.readLine().split("\t");
+			reader.close();
 			
-			String line = null;
-			int count = 2;
-			while((line = reader.readLine()) != null) {
-				line = removeInvalidXMLCharacters(line);
-				String [] row = line.split("\t");
-				Node source = createSourceNode(row);
-				Node target = createTargetNode(row);
-				if(source != null && target != null) {
-					createEgde(source, target, row);
-				} else {
-					log.warning("Error in line " + count+ ". Source = \"" + row[attr.getSourceIdColumn()] + "\". Target = \""+ row[attr.getTargetIdColumn()] + "\"\n");
-				}
-				count++;
+			if(pargs.getBulk()) {
+				metrics.start("prefetch");
+				prefetchIdentifiers(input);
 			}
 			
-			reader.close();
+			metrics.start(ConversionMetrics.PARSE);
+			if(pargs.getConnections() > 1) {
+				PrefetchingRowHandler handler = new PrefetchingRowHandler();
+				readRows(input, handler);
+				handler.flush();
+			} else {
+				readRows(input, new RowHandler() {
+					public void handleRow(String[] row, int lineNumber) throws Exception {
+						processRow(row, lineNumber);
+					}
+				});
+			}
+			commitRowEvent();
+			if(streamWriter != null) {
+				metrics.start("write");
+				streamWriter.close();
+			}
+			metrics.stop();
 
 			log.info("edges: " + countEdges + "\n" + 
 					"source nodes: " + countSrc + "\n" + 
 					"target nodes: " + countTrg + "\n");
+			if(deltaIndex != null) {
+				log.info(newMappings + " identifiers mapped with BridgeDb, " + (deltaIndex.getMappingCount() - newMappings) + " taken from the previous build.\n");
+				metrics.addIndex(deltaIndex.getMappingCount() - newMappings, newMappings);
+				newMappings = 0;
+			}
 			if(nomimat > 0) {
 				log.info(nomimat + " microRNAs could not be mapped to a MIMAT accession number.\n");
+				nomimat = 0;
 			}
 			log.info("conversion of " + networkName + " done.\n");
-		} catch (Exception e) {
-			log.severe("Could not convert file to RegIN: " + e.getMessage());
-			e.printStackTrace();
+		} finally {
+			if(streamWriter != null) {
+				// removes the temporary files if the conversion failed
+				streamWriter.abort();
+			}
+			attr = null;
+			closeIdMappers();
+			sourceIdMapper = null;
+			targetIdMapper = null;
 		}
+	}
+
+	private void readConfig(File config) throws IOException {
+		log.info("Read config file.\n");
+		attr = ConfigFileReader.readFile(config);
+		networkName = getNetworkName();
+		final Set<Integer> columns = attr.getColumns();
+		tokenizers = new ThreadLocal<TabTokenizer>() {
+			protected TabTokenizer initialValue() {
+				return new TabTokenizer(columns);
+			}
+		};
+	}
+	
+	/**
+	 * starts an empty network for the config without reading an input 
+	 * file and without id mappers, used by the benchmarks
+	 */
+	Graph prepare(File config, String [] header) throws IOException {
+		graph = new Graph();
 		edges.clear();
-		foundConnections.clear();
 		nodes.clear();
-		attr = null;
-		sourceIdMapper = null;
-		targetIdMapper = null;
+		readConfig(config);
+		this.header = header;
 		return graph;
 	}
+	
+	/**
+	 * splits the line into fields, only the columns used in the 
+	 * config are returned (without invalid XML characters)
+	 */
+	private String [] parseLine(String line) {
+		return tokenizers.get().tokenize(line);
+	}
+	
+	/**
+	 * passes all rows of the input file (without header) to the handler
+	 */
+	private void readRows(File input, RowHandler handler) throws Exception {
+		if(pargs.getThreads() > 1) {
+			ChunkedFileReader chunkedReader = new ChunkedFileReader(input, pargs.getThreads());
+			chunkedReader.read(new LineParser() {
+				public String[] parse(String line) {
+					return parseLine(line);
+				}
+			}, handler);
+		} else {
+			BufferedReader reader = Utils.openReader(input);
+			reader.readLine();
+			
+			String line = null;
+			int count = 2;
+			while((line = reader.readLine()) != null) {
+				String [] row = parseLine(line);
+				handler.handleRow(row, count);
+				count++;
+			}
+			
+			reader.close();
+		}
+	}
+	
+	/**
+	 * collects the distinct source and target identifiers of the 
+	 * input file and maps them in batches before the nodes are created
+	 */
+	private void prefetchIdentifiers(File input) throws Exception {
+		final Set<String> sourceIds = new LinkedHashSet<String>();
+		final Set<String> targetIds = new LinkedHashSet<String>();
+		readRows(input, new RowHandler() {
+			public void handleRow(String[] row, int lineNumber) throws Exception {
+				if(attr.getSourceIdColumn() != null && attr.getSourceIdColumn() < row.length) {
+					sourceIds.add(row[attr.getSourceIdColumn()]);
+				}
+				if(attr.getTargetIdColumn() != null && attr.getTargetIdColumn() < row.length) {
+					targetIds.add(row[attr.getTargetIdColumn()]);
+				}
+			}
+		});
+		sourceIds.remove("");
+		targetIds.remove("");
+		prefetchIdentifiers(sourceIds, attr.getSourceSyscodeIn(), attr.getSourceSyscodeOut(), sourceIdMapper);
+		prefetchIdentifiers(targetIds, attr.getTargetSyscodeIn(), attr.getTargetSyscodeOut(), targetIdMapper);
+	}
+
+	/**
+	 * identifiers in the index of the previous build are not mapped, 
+	 * the database is only opened if there are others
+	 */
+	private void prefetchIdentifiers(Set<String> ids, String syscodeIn, List<String> syscodesOut, IDMapper mapper) throws IDMapperException {
+		if(mapper == null) return;
+		if(previousIndex != null) {
+			for(Iterator<String> i = ids.iterator(); i.hasNext();) {
+				if(previousIndex.getMapping(syscodeIn, i.next()) != null) {
+					i.remove();
+				}
+			}
+		}
+		if(ids.isEmpty()) return;
+		BulkIDMapper bulk = findMapper(mapper, BulkIDMapper.class);
+		if(bulk != null) {
+			bulk.prefetch(ids, syscodeIn, getMappedSyscodes(syscodeIn, syscodesOut));
+		}
+	}
+
+	/**
+	 * the mapper of the given type in the chain of lazy and asynchronous 
+	 * mappers that wrap each other, a lazy mapper is opened on the way
+	 * @return null if the chain does not contain a mapper of the type
+	 */
+	private static <T extends IDMapper> T findMapper(IDMapper mapper, Class<T> type) throws IDMapperException {
+		while(mapper != null) {
+			if(type.isInstance(mapper)) {
+				return type.cast(mapper);
+			} else if(mapper instanceof LazyIDMapper) {
+				mapper = ((LazyIDMapper) mapper).getMapper();
+			} else if(mapper instanceof AsyncIDMapper) {
+				mapper = ((AsyncIDMapper) mapper).getMapper();
+			} else {
+				return null;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * all system codes a new node is mapped to in 
+	 * getIdentifiers and registerNode
+	 */
+	private Set<String> getMappedSyscodes(String syscodeIn, List<String> syscodesOut) {
+		Set<String> syscodes = new LinkedHashSet<String>(syscodesOut);
+		syscodes.add(syscodeIn);
+		if(syscodeIn.equals("Mb")) {
+			syscodes.add("Mbm");
+		}
+		return syscodes;
+	}
+	
+	/**
+	 * Keeps a window of rows that are not processed yet and starts 
+	 * mapping the new identifiers in these rows in the background.
+	 * Rows are still processed in file order.
+	 */
+	private class PrefetchingRowHandler implements RowHandler {
+		private final static int LOOKAHEAD = 10000;
+		private ArrayDeque<String[]> rows = new ArrayDeque<String[]>();
+		private ArrayDeque<Integer> lineNumbers = new ArrayDeque<Integer>();
+		private Prefetcher source;
+		private Prefetcher target;
+		
+		public PrefetchingRowHandler() {
+			source = new Prefetcher(sourceIdMapper, attr.getSourceIdColumn(), attr.getSourceSyscodeIn(), attr.getSourceSyscodeOut());
+			target = new Prefetcher(targetIdMapper, attr.getTargetIdColumn(), attr.getTargetSyscodeIn(), attr.getTargetSyscodeOut());
+		}
+		
+		public void handleRow(String[] row, int lineNumber) throws Exception {
+			source.prefetch(row);
+			target.prefetch(row);
+			rows.add(row);
+			lineNumbers.add(lineNumber);
+			if(rows.size() > LOOKAHEAD) {
+				processRow(rows.poll(), lineNumbers.poll());
+			}
+		}
+		
+		public void flush() throws Exception {
+			while(!rows.isEmpty()) {
+				processRow(rows.poll(), lineNumbers.poll());
+			}
+		}
+	}
+	
+	/**
+	 * starts the background mapping of the new identifiers of one column. 
+	 * The asynchronous mapper is looked up on the first identifier that 
+	 * is not in the index of the previous build, so a lazy mapper is 
+	 * only opened if it is needed.
+	 */
+	private class Prefetcher {
+		private IDMapper mapper;
+		private Integer column;
+		private String syscodeIn;
+		private Set<String> syscodes;
+		private AsyncIDMapper async;
+		
+		Prefetcher(IDMapper mapper, Integer column, String syscodeIn, List<String> syscodesOut) {
+			this.mapper = mapper;
+			this.column = column;
+			this.syscodeIn = syscodeIn;
+			if(mapper != null) {
+				syscodes = getMappedSyscodes(syscodeIn, syscodesOut);
+			}
+		}
+		
+		void prefetch(String [] row) throws IDMapperException {
+			if(mapper == null || column == null || column >= row.length) return;
+			String id = row[column];
+			if(id.equals("") || nodes.containsKey(id)) return;
+			if(previousIndex != null && previousIndex.getMapping(syscodeIn, id) != null) return;
+			if(async == null) {
+				async = findMapper(mapper, AsyncIDMapper.class);
+				if(async == null) {
+					mapper = null;
+					return;
+				}
+			}
+			async.prefetch(id, syscodeIn, syscodes);
+		}
+	}
+	
+	private void processRow(String [] row, int count) throws IDMapperException, XMLStreamException, IOException {
+		metrics.addRow();
+		if(deltaIndex != null) {
+			deltaIndex.addRow(row);
+		}
+		if(rowBatchSize == 0) {
+			rowEvent = FlightRecorder.ROWS.begin();
+			rowBatchStart = count;
+		}
+		if(++rowBatchSize == ROW_BATCH) {
+			commitRowEvent();
+		}
+		Node source = createSourceNode(row);
+		Node target = createTargetNode(row);
+		if(source != null && target != null) {
+			createEgde(source, target, row);
+		} else {
+			diagnostics.warn("invalid row", "line %d, source = \"%s\", target = \"%s\"", count, row[attr.getSourceIdColumn()], row[attr.getTargetIdColumn()]);
+		}
+	}
 
-	private Edge createEgde(Node source, Node target, String[] row) {
-		if (edges.containsKey(source.getId())) {
-            if (!edges.get(source.getId()).contains(target.getId())) {
-                    Edge e = graph.addEdge("" + countEdges, source, target);
-    	            setEdgeAttributes(e, row);
-    	            e.setAttribute("datasource", networkName);
-    	            e.setAttribute("interaction", attr.getInteractionType());
-    	            
-                    edges.get(source.getId()).add(target.getId());
-                    foundConnections.add(source.getId() + "\t" + target.getId());
-                    countEdges++;
-            }
-	    } else {
-	            Edge e = graph.addEdge("" + countEdges, source, target);
-	            setEdgeAttributes(e, row);
-	            e.setAttribute("datasource", networkName);
-	            e.setAttribute("interaction", attr.getInteractionType());
-	            
-	            List<String> list = new ArrayList<String>();
-	            list.add(source.getId());
-	            foundConnections.add(source.getId() + "\t" + target.getId());
-	            edges.put(target.getId(), list);
-	            countEdges++;
-	    }
+	/**
+	 * only the first row for a source - target pair creates an edge, 
+	 * if the edge was created by another source the datasource is added
+	 */
+	Edge createEgde(Node source, Node target, String[] row) throws XMLStreamException, IOException {
+		long key = LongIntHashMap.pack(source.getIndex(), target.getIndex());
+		int index = edges.get(key);
+		if (index == -1) {
+			Edge e = addEdge(source, target, row);
+			edges.put(key, e.getIndex());
+			countEdges++;
+			return e;
+		} else if (sourceCount > 1 && streamWriter == null) {
+			graph.getEdge(index).appendAttribute("datasource", networkName);
+		}
 		return null;
 	}
 	
+	private Edge addEdge(Node source, Node target, String[] row) throws XMLStreamException, IOException {
+		Edge e = graph.addEdge(source, target);
+		setEdgeAttributes(e, row);
+		e.setAttribute("datasource", networkName);
+		e.setAttribute("interaction", attr.getInteractionType());
+		if(streamWriter != null) {
+			streamWriter.writeEdge(e);
+		}
+		return e;
+	}
+	
 	private void setEdgeAttributes(Edge e, String [] row) {
 		for(Integer i : attr.getEdgeColumns()) {
 			e.setAttribute(header[i], row[i]);
 		}
 	}
 
-	private Node createTargetNode(String[] row) throws IDMapperException {
+	private Node createTargetNode(String[] row) throws IDMapperException, XMLStreamException, IOException {
 		if(attr.getTargetIdColumn() != null) {
 			String identifier = row[attr.getTargetIdColumn()];
 			if(!identifier.equals("")) {
@@ -183,8 +751,7 @@ public class GenericCreator {
 					String identifiers = "[" + identifier;
 					nodes.put(identifier, node);
 					if(targetIdMapper != null) {
-						registerNode(node, attr.getTargetSyscodeIn(), targetIdMapper);
-						identifiers = identifiers + getIdentifiers(identifier, attr.getTargetSyscodeIn(), attr.getTargetSyscodeOut(), targetIdMapper);
+						identifiers = identifiers + mapNode(node, attr.getTargetSyscodeIn(), attr.getTargetSyscodeOut(), targetIdMapper);
 					}
 					identifiers = identifiers + "]";
 					
@@ -197,6 +764,9 @@ public class GenericCreator {
 						node.setAttribute("label", identifier);
 					}
 					setNodeAttributes(node, attr.getTargetColumns(), row);
+					if(streamWriter != null) {
+						streamWriter.writeNode(node);
+					}
 					countTrg++;
 					return node;
 				}
@@ -211,14 +781,54 @@ public class GenericCreator {
 		}
 	}
 
-	private String getIdentifiers(String identifier, String targetSyscodeIn,
+	/**
+	 * registers the aliases of the node and returns its mapped identifiers, 
+	 * in incremental mode the mapping of the previous build is reused
+	 */
+	private String mapNode(Node node, String syscodeIn, List<String> syscodesOut, IDMapper mapper) throws IDMapperException {
+		Mapping mapping = previousIndex == null ? null : previousIndex.getMapping(syscodeIn, node.getId());
+		if(mapping == null) {
+			mapping = lookupNode(node.getId(), syscodeIn, syscodesOut, mapper);
+			newMappings++;
+		}
+		registerNode(node, mapping);
+		if(deltaIndex != null) {
+			deltaIndex.putMapping(syscodeIn, node.getId(), mapping);
+		}
+		return mapping.identifiers;
+	}
+
+	private Mapping lookupNode(String id, String syscodeIn, List<String> syscodesOut, IDMapper mapper) throws IDMapperException {
+		Mapping mapping = new Mapping();
+		Xref xref = new Xref(id, DataSource.getBySystemCode(syscodeIn));
+		// if node is a microRNA check if there is a MIMAT identifier
+		if(syscodeIn.equals("Mb")) {
+			mapping.mimats = new ArrayList<String>();
+			Set<Xref> result = mapID(mapper, xref, "Mbm");
+			for(Xref x : result) {
+				if(x.getId().startsWith("MIMAT")) {
+					mapping.mimats.add(x.getId());
+				}
+			}
+		}
+		Set<Xref> result = mapID(mapper, xref, syscodeIn);
+		for(Xref x : result) {
+			if(!x.getId().equals(id)) {
+				mapping.aliases.add(x.getId());
+			}
+		}
+		mapping.identifiers = getIdentifiers(id, syscodeIn, syscodesOut, mapper);
+		return mapping;
+	}
+
+	String getIdentifiers(String identifier, String targetSyscodeIn,
 			List<String> targetSyscodeOut, IDMapper mapper) throws IDMapperException {
 		String identifiers = "";
 		Set<String> ids = new HashSet<String>();
 		ids.add(identifier);
 		Xref in = new Xref(identifier, DataSource.getBySystemCode(targetSyscodeIn));
 		for(String ds : targetSyscodeOut) {
-			Set<Xref> result = mapper.mapID(in, DataSource.getBySystemCode(ds));
+			Set<Xref> result = mapID(mapper, in, ds);
 			for(Xref x : result) {
 				ids.add(x.getId());
 			}
@@ -232,37 +842,54 @@ public class GenericCreator {
 	}
 
 
-	private void registerNode(Node node, String syscodeIn, IDMapper mapper) throws IDMapperException {
-		String id = node.getId();
-		Xref xref = new Xref(id, DataSource.getBySystemCode(syscodeIn));
-		if(mapper != null) {
-			System.out.println("###" + xref.getId());
-			// if node is a microRNA check if there is a MIMAT identifier
-			if(syscodeIn.equals("Mb")) {
-				Set<Xref> result = mapper.mapID(xref, DataSource.getBySystemCode("Mbm"));
-				boolean found = false;
-				for(Xref x : result) {
-					if(x.getId().startsWith("MIMAT")) {
-						if(!nodes.containsKey(x.getId())) {
-							found = true;
-						}
-					}
-				}
-				if(!found) {
-					nomimat++;
+	/**
+	 * BridgeDb lookup, the latency is added to the metrics
+	 */
+	private Set<Xref> mapID(IDMapper mapper, Xref xref, String syscode) throws IDMapperException {
+		Object event = FlightRecorder.LOOKUP.begin();
+		long start = System.nanoTime();
+		Set<Xref> result = null;
+		try {
+			result = mapper.mapID(xref, DataSource.getBySystemCode(syscode));
+			return result;
+		} finally {
+			metrics.mapperCall(System.nanoTime() - start);
+			FlightRecorder.LOOKUP.commit(event, xref.getId(), xref.getDataSource().getSystemCode(), syscode, result == null ? -1 : result.size());
+		}
+	}
+	
+	/**
+	 * ends the flight recorder event of the current batch of rows
+	 */
+	private void commitRowEvent() {
+		if(rowBatchSize > 0) {
+			FlightRecorder.ROWS.commit(rowEvent, networkName, rowBatchStart, rowBatchSize);
+			rowEvent = null;
+			rowBatchSize = 0;
+		}
+	}
+
+	private void registerNode(Node node, Mapping mapping) {
+		if(diagnostics.isTracing()) {
+			diagnostics.trace("node " + node.getId() + ", aliases " + mapping.aliases);
+		}
+		if(mapping.mimats != null) {
+			boolean found = false;
+			for(String mimat : mapping.mimats) {
+				if(!nodes.containsKey(mimat)) {
+					found = true;
 				}
 			}
-			Set<Xref> result = mapper.mapID(xref, DataSource.getBySystemCode(syscodeIn));
-			for(Xref x : result) {
-				if(!x.getId().equals(id)) {
-					nodes.put(x.getId(), node);
-					System.out.println("\t###" + x.getId());
-				}
+			if(!found) {
+				nomimat++;
 			}
 		}
+		for(String alias : mapping.aliases) {
+			nodes.put(alias, node);
+		}
 	}
 
-	private Node createSourceNode(String[] row) throws IDMapperException {
+	private Node createSourceNode(String[] row) throws IDMapperException, XMLStreamException, IOException {
 		if(attr.getSourceIdColumn() != null) {
 			String identifier = row[attr.getSourceIdColumn()];
 			if(!identifier.equals("")) {
@@ -273,8 +900,7 @@ public class GenericCreator {
 					String identifiers = "[" + identifier;
 					nodes.put(identifier, node);
 					if(sourceIdMapper != null) {
-						registerNode(node, attr.getSourceSyscodeIn(), sourceIdMapper);
-						identifiers = identifiers + getIdentifiers(identifier, attr.getSourceSyscodeIn(), attr.getSourceSyscodeOut(), sourceIdMapper);
+						identifiers = identifiers + mapNode(node, attr.getSourceSyscodeIn(), attr.getSourceSyscodeOut(), sourceIdMapper);
 					}
 					identifiers = identifiers + "]";
 					
@@ -287,6 +913,9 @@ public class GenericCreator {
 						node.setAttribute("label", identifier);
 					}
 					setNodeAttributes(node, attr.getSourceColumns(), row);
+					if(streamWriter != null) {
+						streamWriter.writeNode(node);
+					}
 					countSrc++;
 					return node;
 				}
@@ -296,18 +925,89 @@ public class GenericCreator {
 	}
 
 	private void setNetworkAttributes(File input) {
-		graph.setTitle(networkName);
-		graph.setAttribute("Source File", input.getName());
-		graph.setAttribute("RegIN Name", networkName);
+		if("".equals(graph.getTitle())) {
+			graph.setTitle(networkName);
+		} else {
+			graph.setTitle(graph.getTitle() + "; " + networkName);
+		}
+		graph.appendAttribute("Source File", input.getName());
+		graph.appendAttribute("RegIN Name", networkName);
+		if(pargs.getSorted()) {
+			// same id for every conversion of the network
+			graph.setId(String.valueOf(graph.getTitle().hashCode() & 0xFFFFFFFFL));
+		}
 	}
 
-	private void setUpIdMappers() {
+	private void setUpIdMappers() throws IOException, IDMapperException {
+		metrics.addDatabase(attr.getSourceBridgeDb());
+		metrics.addDatabase(attr.getTargetBridgeDb());
 		if(attr.getSourceBridgeDb() != null) {
-			sourceIdMapper = Utils.initIDMapper(attr.getSourceBridgeDb(), false);
+			sourceIdMapper = initIdMapper(attr.getSourceBridgeDb());
 		}
 		
 		if(attr.getTargetBridgeDb() != null) {
-			targetIdMapper = Utils.initIDMapper(attr.getTargetBridgeDb(), false);
+			if(attr.getTargetBridgeDb().equals(attr.getSourceBridgeDb()) && (pargs.isCache() || pargs.getBulk() || pargs.getConnections() > 1 || batch != null)) {
+				// share cached and prefetched results if source and target use the same database
+				targetIdMapper = sourceIdMapper;
+			} else {
+				targetIdMapper = initIdMapper(attr.getTargetBridgeDb());
+			}
+		}
+	}
+	
+	private IDMapper initIdMapper(final File bridgeDb) throws IOException, IDMapperException {
+		if(previousIndex != null) {
+			// only opened if an identifier is not in the index of the previous build
+			return new LazyIDMapper() {
+				protected IDMapper connect() throws IDMapperException {
+					try {
+						return openIdMapper(bridgeDb);
+					} catch (IOException e) {
+						throw new IDMapperException(e);
+					}
+				}
+			};
+		}
+		return openIdMapper(bridgeDb);
+	}
+	
+	private IDMapper openIdMapper(File bridgeDb) throws IOException, IDMapperException {
+		int connections = pargs.getConnections();
+		IDMapper mapper;
+		if(batch != null) {
+			mapper = new SharedIDMapper(batch.getMapper(bridgeDb));
+		} else if(pargs.isCache()) {
+			CachedIDMapper cache = new CachedIDMapper(bridgeDb, pargs.getCache(), connections);
+			caches.add(cache);
+			mapper = cache;
+		} else if(connections > 1) {
+			mapper = Utils.connectIDMapper(bridgeDb, connections);
+		} else {
+			mapper = Utils.initIDMapper(bridgeDb, false);
+		}
+		if(mapper != null && pargs.getBulk()) {
+			mapper = new BulkIDMapper(mapper);
+		}
+		if(mapper != null && connections > 1) {
+			mapper = new AsyncIDMapper(mapper, connections);
+		}
+		return mapper;
+	}
+	
+	private void closeIdMappers() {
+		for(CachedIDMapper cache : caches) {
+			metrics.addCache(cache.getHits(), cache.getMisses());
+		}
+		caches.clear();
+		try {
+			if(sourceIdMapper != null) {
+				sourceIdMapper.close();
+			}
+			if(targetIdMapper != null && targetIdMapper != sourceIdMapper) {
+				targetIdMapper.close();
+			}
+		} catch (IDMapperException e) {
+			log.warning("Could not close id mapper: " + e.getMessage());
 		}
 	}
 
@@ -322,34 +1022,12 @@ public class GenericCreator {
 		return name;
 	}
 	
-	 /**
-     * Removes all invalid Unicode characters that are not suitable to be used
-     * either in markup or text inside XML Documents.
-     * 
-     * Based on these recommendations
-     * http://www.w3.org/TR/2000/REC-xml-20001006#NT-Char
-     * http://cse-mjmcl.cse.bris.ac.uk/blog/2007/02/14/1171465494443.html
-     * 
-     * @param s: The resultant String stripped of the offending characters!
-     * @return
-     */
-    public String removeInvalidXMLCharacters(String s) {
-            StringBuilder out = new StringBuilder();
-
-            int codePoint;
-            int i = 0;
-
-            while (i < s.length()) {
-                    // This is the unicode code of the character.
-                    codePoint = s.codePointAt(i);
-                    if ((codePoint == 0x9) || (codePoint == 0xA) || (codePoint == 0xD)
-                                    || ((codePoint >= 0x20) && (codePoint <= 0xD7FF))
-                                    || ((codePoint >= 0xE000) && (codePoint <= 0xFFFD))
-                                    || ((codePoint >= 0x10000) && (codePoint <= 0x10FFFF))) {
-                            out.append(Character.toChars(codePoint));
-                    }
-                    i += Character.charCount(codePoint);
-            }
-            return out.toString();
-    }
+	/**
+	 * Removes all invalid Unicode characters that are not suitable to be used
+	 * either in markup or text inside XML Documents.
+	 * @see Utils#removeInvalidXMLCharacters(String)
+	 */
+	public String removeInvalidXMLCharacters(String s) {
+		return Utils.removeInvalidXMLCharacters(s);
+	}
 }
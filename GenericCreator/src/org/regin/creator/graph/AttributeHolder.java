@@ -6,11 +6,22 @@ import java.util.Set;
 
 /**
  * 
+ * Attributes are kept in a map, nodes and edges
+ * override the accessors to use the {@link AttributeStore} 
+ * of their graph instead.
  * @author Thomas
  *
  */
 public class AttributeHolder {
-	Map<String, Object> attributes = new HashMap<String, Object>();
+	Map<String, Object> attributes;
+	
+	public AttributeHolder() {
+		this(new HashMap<String, Object>());
+	}
+	
+	AttributeHolder(Map<String, Object> attributes) {
+		this.attributes = attributes;
+	}
 
 	public void setAttribute(String name, String value) {
 		attributes.put(name, value);
@@ -28,12 +39,31 @@ public class AttributeHolder {
 		appendAttribute(name, value, "; ");
 	}
 	
+	/**
+	 * appends the value if it is not one of the values 
+	 * that are already in the attribute (separated by sep)
+	 */
 	public void appendAttribute(String name, String value, String sep) {
-		String curr = attributes.get(name) == null ? "" : attributes.get(name).toString();
-		if("".equals(curr)) curr = value;
-		else if(!curr.startsWith(value) && !curr.contains(sep + value)) {
+		Object o = getAttribute(name);
+		String curr = o == null ? "" : o.toString();
+		if("".equals(curr)) {
+			curr = value;
+		} else if(!containsValue(curr, value, sep)) {
 			curr += sep + value;
 		}
-		attributes.put(name, curr);
+		setAttribute(name, curr);
+	}
+	
+	static boolean containsValue(String values, String value, String sep) {
+		int start = 0;
+		while(start <= values.length()) {
+			int end = values.indexOf(sep, start);
+			if(end == -1) end = values.length();
+			if(end - start == value.length() && values.startsWith(value, start)) {
+				return true;
+			}
+			start = end + sep.length();
+		}
+		return false;
 	}
 }
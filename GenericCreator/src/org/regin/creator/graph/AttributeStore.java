@@ -0,0 +1,258 @@
+package org.regin.creator.graph;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Column-wise storage of the attributes of all nodes or all edges of
+ * a graph. Every attribute name has one column, elements are rows.
+ * String columns start dictionary encoded and switch to plain strings
+ * if the attribute turns out to have many different values. Numeric
+ * attributes are kept as doubles.
+ * Values are returned exactly as they were set.
+ * @author Thomas
+ *
+ */
+public class AttributeStore {
+
+	/**
+	 * attributes that are stored as numbers and written as type "real"
+	 */
+	final static Set<String> NUMERIC = new HashSet<String>(Arrays.asList("context+ score", "score", "pvalue"));
+
+	public static boolean isNumeric(String name) {
+		return NUMERIC.contains(name);
+	}
+
+	private Map<String, Column> columns = new LinkedHashMap<String, Column>();
+	private int rows = 0;
+
+	/**
+	 * @return index of the new (empty) row
+	 */
+	int addRow() {
+		return rows++;
+	}
+
+	int getRowCount() {
+		return rows;
+	}
+
+	void set(int row, String name, String value) {
+		Column column = columns.get(name);
+		if(column == null) {
+			if(value == null) return;
+			column = isNumeric(name) ? new DecimalColumn() : new DictionaryColumn();
+			columns.put(name, column);
+		}
+		if(!column.set(row, value)) {
+			// too many different values for a dictionary
+			column = new StringColumn(column, rows);
+			column.set(row, value);
+			columns.put(name, column);
+		}
+	}
+
+	Object get(int row, String name) {
+		Column column = columns.get(name);
+		return column == null ? null : column.get(row);
+	}
+
+	/**
+	 * names of all attributes that have a value in this row
+	 */
+	Set<String> getNames(int row) {
+		Set<String> names = new LinkedHashSet<String>();
+		for(Map.Entry<String, Column> e : columns.entrySet()) {
+			if(e.getValue().get(row) != null) {
+				names.add(e.getKey());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * names of all attributes in the order they were first set
+	 */
+	Set<String> getColumnNames() {
+		return columns.keySet();
+	}
+
+	void clearRow(int row) {
+		for(Column column : columns.values()) {
+			column.set(row, null);
+		}
+	}
+
+	private static abstract class Column {
+		/**
+		 * @return false if the value can not be stored in this column
+		 */
+		abstract boolean set(int row, String value);
+		abstract String get(int row);
+	}
+
+	private static int grow(int capacity, int row) {
+		int size = Math.max(16, capacity);
+		while(size <= row) size *= 2;
+		return size;
+	}
+
+	private static class DictionaryColumn extends Column {
+		private final static int MIN_DICTIONARY = 1024;
+
+		// 0 = no value, otherwise position in the dictionary + 1
+		int [] codes = new int[0];
+		List<String> dictionary = new ArrayList<String>();
+		Map<String, Integer> lookup = new HashMap<String, Integer>();
+		int rows = 0;
+
+		boolean set(int row, String value) {
+			if(row >= codes.length) {
+				if(value == null) return true;
+				codes = Arrays.copyOf(codes, grow(codes.length, row));
+			}
+			rows = Math.max(rows, row + 1);
+			if(value == null) {
+				codes[row] = 0;
+				return true;
+			}
+			Integer code = lookup.get(value);
+			if(code == null) {
+				if(dictionary.size() >= MIN_DICTIONARY && dictionary.size() * 2 > rows) {
+					return false;
+				}
+				dictionary.add(value);
+				code = dictionary.size();
+				lookup.put(value, code);
+			}
+			codes[row] = code;
+			return true;
+		}
+
+		String get(int row) {
+			if(row >= codes.length || codes[row] == 0) return null;
+			return dictionary.get(codes[row] - 1);
+		}
+	}
+
+	private static class StringColumn extends Column {
+		String [] values;
+
+		StringColumn(Column column, int rows) {
+			values = new String[grow(0, rows)];
+			for(int i = 0; i < rows; i++) {
+				values[i] = column.get(i);
+			}
+		}
+
+		boolean set(int row, String value) {
+			if(row >= values.length) {
+				if(value == null) return true;
+				values = Arrays.copyOf(values, grow(values.length, row));
+			}
+			values[row] = value;
+			return true;
+		}
+
+		String get(int row) {
+			return row < values.length ? values[row] : null;
+		}
+	}
+
+	/**
+	 * Stores plain decimal numbers as double and the number of
+	 * fractional digits, so the original text can be restored.
+	 * Values in other notations are kept as strings.
+	 */
+	private static class DecimalColumn extends Column {
+		private final static byte NONE = -1;
+		private final static byte TEXT = -2;
+		private final static int MAX_DIGITS = 15;
+
+		double [] values = new double[0];
+		byte [] scales = new byte[0];
+		Map<Integer, String> texts = new HashMap<Integer, String>();
+
+		boolean set(int row, String value) {
+			if(row >= values.length) {
+				if(value == null) return true;
+				int size = grow(values.length, row);
+				values = Arrays.copyOf(values, size);
+				int old = scales.length;
+				scales = Arrays.copyOf(scales, size);
+				Arrays.fill(scales, old, size, NONE);
+			}
+			if(scales[row] == TEXT) {
+				texts.remove(row);
+			}
+			if(value == null) {
+				scales[row] = NONE;
+				return true;
+			}
+			int scale = getScale(value);
+			if(scale >= 0) {
+				values[row] = Double.parseDouble(value);
+				scales[row] = (byte) scale;
+			} else {
+				scales[row] = TEXT;
+				texts.put(row, value);
+			}
+			return true;
+		}
+
+		String get(int row) {
+			if(row >= scales.length || scales[row] == NONE) return null;
+			if(scales[row] == TEXT) return texts.get(row);
+			return BigDecimal.valueOf(values[row]).setScale(scales[row], RoundingMode.HALF_EVEN).toPlainString();
+		}
+
+		/**
+		 * number of fractional digits if the value is a plain decimal
+		 * number that is restored exactly from a double, -1 otherwise
+		 */
+		static int getScale(String value) {
+			int i = 0;
+			int length = value.length();
+			boolean negative = false;
+			if(i < length && value.charAt(i) == '-') {
+				negative = true;
+				i++;
+			}
+			int start = i;
+			boolean nonZero = false;
+			while(i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+				if(value.charAt(i) != '0') nonZero = true;
+				i++;
+			}
+			int integerDigits = i - start;
+			// no leading zeros
+			if(integerDigits == 0 || (integerDigits > 1 && value.charAt(start) == '0')) return -1;
+			int scale = 0;
+			if(i < length && value.charAt(i) == '.') {
+				i++;
+				int fraction = i;
+				while(i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+					if(value.charAt(i) != '0') nonZero = true;
+					i++;
+				}
+				scale = i - fraction;
+				if(scale == 0) return -1;
+			}
+			if(i != length) return -1;
+			if(integerDigits + scale > MAX_DIGITS) return -1;
+			// negative zero can not be restored
+			if(negative && !nonZero) return -1;
+			return scale;
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package org.regin.creator.graph;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads a network in the binary format of {@link BinaryGraphWriter}.
+ * The file is memory-mapped, opening it only reads the header and the
+ * attribute column directory. Nodes, edges, attributes and strings are
+ * read from the mapped file when they are accessed.
+ * Files are limited to 2 GB (one mapped buffer).
+ * @author Thomas
+ *
+ */
+public class BinaryGraphReader implements Closeable {
+
+	private RandomAccessFile file;
+	private ByteBuffer buffer;
+	private int version;
+
+	private int nodeCount;
+	private int edgeCount;
+	private int nodeIds;
+	private int edgeSources;
+	private int edgeTargets;
+	private int stringCount;
+	private int stringData;
+	private int stringOffsets;
+	// position of the values of each attribute column
+	private Map<String, Integer> nodeColumns;
+	private Map<String, Integer> edgeColumns;
+	private Map<String, Integer> nodeIndex;
+
+	public BinaryGraphReader(File input) throws IOException {
+		file = new RandomAccessFile(input, "r");
+		FileChannel channel = file.getChannel();
+		if(channel.size() > Integer.MAX_VALUE) {
+			file.close();
+			throw new IOException("Binary RegIN files larger than 2 GB are not supported.");
+		}
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		if(channel.size() < BinaryGraphWriter.HEADER_SIZE || buffer.getInt(0) != BinaryGraphWriter.MAGIC) {
+			file.close();
+			throw new IOException(input + " is not a binary RegIN file.");
+		}
+		version = buffer.getInt(4);
+		if(version < 1 || version > BinaryGraphWriter.VERSION) {
+			file.close();
+			throw new IOException("Unsupported version of the binary RegIN format: " + buffer.getInt(4));
+		}
+		int strings = (int) buffer.getLong(8);
+		int nodes = (int) buffer.getLong(16);
+		int edges = (int) buffer.getLong(24);
+		int nodeAttributes = (int) buffer.getLong(32);
+		int edgeAttributes = (int) buffer.getLong(40);
+
+		stringCount = buffer.getInt(strings);
+		stringData = strings + 8;
+		stringOffsets = stringData + buffer.getInt(strings + 4);
+
+		nodeCount = buffer.getInt(nodes);
+		nodeIds = nodes + 4;
+		edgeCount = buffer.getInt(edges);
+		edgeSources = edges + 4;
+		edgeTargets = edgeSources + 4 * edgeCount;
+
+		nodeColumns = readColumns(nodeAttributes, nodeCount);
+		edgeColumns = readColumns(edgeAttributes, edgeCount);
+	}
+
+	private Map<String, Integer> readColumns(int position, int rows) {
+		Map<String, Integer> columns = new LinkedHashMap<String, Integer>();
+		int count = buffer.getInt(position);
+		position += 4;
+		for(int i = 0; i < count; i++) {
+			columns.put(getString(buffer.getInt(position)), position + 4);
+			position += 4 + 4 * rows;
+		}
+		return columns;
+	}
+
+	/**
+	 * string at the given position of the string table
+	 */
+	public String getString(int ref) {
+		if(ref < 0 || ref >= stringCount) return null;
+		int start = buffer.getInt(stringOffsets + 4 * ref);
+		int end = buffer.getInt(stringOffsets + 4 * ref + 4);
+		byte [] bytes = new byte[end - start];
+		ByteBuffer b = buffer.duplicate();
+		b.position(stringData + start);
+		b.get(bytes);
+		return new String(bytes, BinaryGraphWriter.UTF8);
+	}
+
+	public String getTitle() {
+		return getString(buffer.getInt(BinaryGraphWriter.HEADER_SIZE));
+	}
+
+	/**
+	 * @return graph id or null (always null in version 1 files)
+	 */
+	public String getId() {
+		return version < 2 ? null : getString(buffer.getInt(BinaryGraphWriter.HEADER_SIZE + 4));
+	}
+
+	/**
+	 * network attributes
+	 */
+	public Map<String, String> getAttributes() {
+		Map<String, String> attributes = new LinkedHashMap<String, String>();
+		int position = BinaryGraphWriter.HEADER_SIZE + (version < 2 ? 4 : 8);
+		int count = buffer.getInt(position);
+		for(int i = 0; i < count; i++) {
+			position += 8;
+			attributes.put(getString(buffer.getInt(position - 4)), getString(buffer.getInt(position)));
+		}
+		return attributes;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public String getNodeId(int node) {
+		return getString(buffer.getInt(nodeIds + 4 * node));
+	}
+
+	/**
+	 * @return index of the node with the given id or -1, 
+	 * the id lookup table is created on the first call
+	 */
+	public synchronized int getNode(String id) {
+		if(nodeIndex == null) {
+			nodeIndex = new HashMap<String, Integer>(nodeCount * 2);
+			for(int i = 0; i < nodeCount; i++) {
+				nodeIndex.put(getNodeId(i), i);
+			}
+		}
+		Integer index = nodeIndex.get(id);
+		return index == null ? -1 : index;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public int getEdgeSource(int edge) {
+		return buffer.getInt(edgeSources + 4 * edge);
+	}
+
+	public int getEdgeTarget(int edge) {
+		return buffer.getInt(edgeTargets + 4 * edge);
+	}
+
+	public Set<String> getNodeAttributeNames() {
+		return nodeColumns.keySet();
+	}
+
+	public Set<String> getEdgeAttributeNames() {
+		return edgeColumns.keySet();
+	}
+
+	public String getNodeAttribute(int node, String name) {
+		return getValue(nodeColumns, node, name);
+	}
+
+	public String getEdgeAttribute(int edge, String name) {
+		return getValue(edgeColumns, edge, name);
+	}
+
+	private String getValue(Map<String, Integer> columns, int row, String name) {
+		Integer position = columns.get(name);
+		return position == null ? null : getString(buffer.getInt(position + 4 * row));
+	}
+
+	/**
+	 * reads the whole network into a graph
+	 */
+	public Graph toGraph() {
+		Graph graph = new Graph();
+		graph.setTitle(getTitle());
+		graph.setId(getId());
+		for(Map.Entry<String, String> e : getAttributes().entrySet()) {
+			graph.setAttribute(e.getKey(), e.getValue());
+		}
+		for(int i = 0; i < nodeCount; i++) {
+			graph.addNode(getNodeId(i));
+		}
+		for(int i = 0; i < edgeCount; i++) {
+			graph.addEdge(graph.getNode(getEdgeSource(i)), graph.getNode(getEdgeTarget(i)));
+		}
+		// column by column, so the attributes keep their order
+		for(String name : nodeColumns.keySet()) {
+			for(int i = 0; i < nodeCount; i++) {
+				String value = getNodeAttribute(i, name);
+				if(value != null) {
+					graph.getNode(i).setAttribute(name, value);
+				}
+			}
+		}
+		for(String name : edgeColumns.keySet()) {
+			for(int i = 0; i < edgeCount; i++) {
+				String value = getEdgeAttribute(i, name);
+				if(value != null) {
+					graph.getEdge(i).setAttribute(name, value);
+				}
+			}
+		}
+		return graph;
+	}
+
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,226 @@
+package org.regin.creator.graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.regin.creator.graph.Graph.Edge;
+import org.regin.creator.graph.Graph.Node;
+
+/**
+ * Writes a graph in the compact binary RegIN format that can be
+ * memory-mapped by {@link BinaryGraphReader}. All values are big-endian.
+ * 
+ * <pre>
+ * header     int magic, int version, long offsets of the string table,
+ *            node table, edge table, node attributes, edge attributes
+ * graph      int title, int id (-1 = no id), int attribute count, (int name, int value) per attribute
+ * nodes      int count, int id per node
+ * edges      int count, int source per edge, int target per edge
+ * attributes int column count, per column: int name, int value per row (-1 = no value)
+ * strings    int count, int data length, UTF-8 data, int offset per string + end offset
+ * </pre>
+ * Strings are stored once in the string table and referenced by their
+ * position, nodes and edges are referenced by their index.
+ * The file is written column by column when the writer is ended, nodes
+ * and edges are stored in the order in which they were passed to the writer.
+ * @author Thomas
+ *
+ */
+public class BinaryGraphWriter implements GraphWriter {
+	public final static String EXTENSION = ".regin";
+
+	final static int MAGIC = 0x5247494E;
+	final static int VERSION = 2;
+	final static int HEADER_SIZE = 48;
+	final static Charset UTF8 = Charset.forName("UTF-8");
+
+	private DataOutputStream out;
+	private Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+	private List<String> strings = new ArrayList<String>();
+
+	public static boolean isBinary(File file) {
+		return file.getName().endsWith(EXTENSION);
+	}
+
+	private Graph graph;
+	private File output;
+	private int [] nodeOrder;
+	private int nodes;
+	private int [] edgeOrder;
+	private int edges;
+
+	public static void write(Graph graph, File file) throws IOException {
+		new BinaryGraphWriter().writeGraph(graph, file, order(graph.getNodeCount()), order(graph.getEdgeCount()));
+	}
+
+	private static int [] order(int count) {
+		int [] order = new int[count];
+		for(int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		return order;
+	}
+
+	public String getFormat() {
+		return "regin";
+	}
+
+	public String getExtension() {
+		return EXTENSION;
+	}
+
+	/**
+	 * the tables are written from the graph in end
+	 */
+	public boolean isStreaming() {
+		return false;
+	}
+
+	/**
+	 * the binary format is not compressed and written on one thread
+	 */
+	public void setOutputThreads(int threads) {
+	}
+
+	public void start(Graph graph, File output) {
+		this.graph = graph;
+		this.output = output;
+		nodeOrder = new int[graph.getNodeCount()];
+		edgeOrder = new int[graph.getEdgeCount()];
+		nodes = 0;
+		edges = 0;
+	}
+
+	public void writeNode(Node node) {
+		nodeOrder[nodes++] = node.getIndex();
+	}
+
+	public void writeEdge(Edge edge) {
+		edgeOrder[edges++] = edge.getIndex();
+	}
+
+	public void end() throws IOException {
+		writeGraph(graph, output, Arrays.copyOf(nodeOrder, nodes), Arrays.copyOf(edgeOrder, edges));
+	}
+
+	/**
+	 * @param nodeOrder graph indices of the nodes in file order
+	 * @param edgeOrder graph indices of the edges in file order
+	 */
+	private void writeGraph(Graph graph, File file, int [] nodeOrder, int [] edgeOrder) throws IOException {
+		long [] offsets = new long[5];
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for(int i = 0; i < offsets.length; i++) {
+				out.writeLong(0);
+			}
+
+			out.writeInt(ref(graph.getTitle()));
+			out.writeInt(graph.getId() == null ? -1 : ref(graph.getId()));
+			List<String> names = new ArrayList<String>(graph.getAttributeNames());
+			out.writeInt(names.size());
+			for(String name : names) {
+				out.writeInt(ref(name));
+				out.writeInt(ref(String.valueOf(graph.getAttribute(name))));
+			}
+
+			offsets[1] = out.size();
+			// position of every graph node in the file
+			int [] position = new int[graph.getNodeCount()];
+			out.writeInt(nodeOrder.length);
+			for(int i = 0; i < nodeOrder.length; i++) {
+				position[nodeOrder[i]] = i;
+				out.writeInt(ref(graph.nodeIds.get(nodeOrder[i])));
+			}
+
+			offsets[2] = out.size();
+			out.writeInt(edgeOrder.length);
+			for(int e : edgeOrder) {
+				out.writeInt(position[graph.edgeSrc[e]]);
+			}
+			for(int e : edgeOrder) {
+				out.writeInt(position[graph.edgeTgt[e]]);
+			}
+
+			offsets[3] = out.size();
+			writeAttributes(graph.nodeAttributes, nodeOrder);
+			offsets[4] = out.size();
+			writeAttributes(graph.edgeAttributes, edgeOrder);
+
+			offsets[0] = out.size();
+			writeStrings();
+			// the size of DataOutputStream stops at Integer.MAX_VALUE
+			if(out.size() == Integer.MAX_VALUE) {
+				throw new IOException("Network is too large for the binary format (2 GB).");
+			}
+		} finally {
+			out.close();
+		}
+
+		RandomAccessFile header = new RandomAccessFile(file, "rw");
+		try {
+			header.seek(8);
+			for(long offset : offsets) {
+				header.writeLong(offset);
+			}
+		} finally {
+			header.close();
+		}
+	}
+
+	private void writeAttributes(AttributeStore store, int [] order) throws IOException {
+		List<String> names = new ArrayList<String>(store.getColumnNames());
+		out.writeInt(names.size());
+		for(String name : names) {
+			out.writeInt(ref(name));
+			for(int row : order) {
+				Object value = store.get(row, name);
+				out.writeInt(value == null ? -1 : ref(value.toString()));
+			}
+		}
+	}
+
+	private void writeStrings() throws IOException {
+		int [] offsets = new int[strings.size() + 1];
+		int length = 0;
+		for(int i = 0; i < strings.size(); i++) {
+			offsets[i] = length;
+			length += strings.get(i).getBytes(UTF8).length;
+		}
+		offsets[strings.size()] = length;
+
+		out.writeInt(strings.size());
+		out.writeInt(length);
+		for(String s : strings) {
+			out.write(s.getBytes(UTF8));
+		}
+		for(int offset : offsets) {
+			out.writeInt(offset);
+		}
+	}
+
+	/**
+	 * position of the string in the string table
+	 */
+	private int ref(String s) {
+		Integer index = stringIndex.get(s);
+		if(index == null) {
+			index = strings.size();
+			strings.add(s);
+			stringIndex.put(s, index);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,110 @@
+package org.regin.creator.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.regin.creator.graph.Graph.Edge;
+import org.regin.creator.graph.Graph.Node;
+import org.regin.creator.utils.Utils;
+
+/**
+ * Writes the edges as tab-delimited table with a header:
+ * source id, target id and one column per edge attribute.
+ * Tabs, line breaks and backslashes in values are escaped
+ * as \t, \n, \r and \\.
+ * @author Thomas
+ *
+ */
+public class EdgeListWriter implements GraphWriter {
+
+	private PrintWriter out;
+	private int threads = Utils.getOutputThreads();
+	private List<String> columns;
+
+	public String getFormat() {
+		return "tsv";
+	}
+
+	public String getExtension() {
+		return ".tsv";
+	}
+
+	/**
+	 * the attribute columns are read in start
+	 */
+	public boolean isStreaming() {
+		return false;
+	}
+
+	public void setOutputThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public void start(Graph graph, File output) throws IOException {
+		out = Utils.openWriter(output, threads);
+		columns = new ArrayList<String>(graph.edgeAttributes.getColumnNames());
+		out.print("source\ttarget");
+		for(String c : columns) {
+			out.print('\t');
+			out.print(escape(c));
+		}
+		out.print('\n');
+	}
+
+	public void writeNode(Node node) {
+	}
+
+	public void writeEdge(Edge edge) {
+		out.print(escape(edge.getSrc().getId()));
+		out.print('\t');
+		out.print(escape(edge.getTgt().getId()));
+		for(String c : columns) {
+			Object value = edge.getAttribute(c);
+			out.print('\t');
+			if(value != null) {
+				out.print(escape(value.toString()));
+			}
+		}
+		out.print('\n');
+	}
+
+	private static String escape(String value) {
+		StringBuilder sb = null;
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			String escaped;
+			switch(c) {
+			case '\t': escaped = "\\t"; break;
+			case '\n': escaped = "\\n"; break;
+			case '\r': escaped = "\\r"; break;
+			case '\\': escaped = "\\\\"; break;
+			default: escaped = null;
+			}
+			if(escaped != null && sb == null) {
+				sb = new StringBuilder(value.length() + 8);
+				sb.append(value, 0, i);
+			}
+			if(sb != null) {
+				if(escaped == null) {
+					sb.append(c);
+				} else {
+					sb.append(escaped);
+				}
+			}
+		}
+		return sb == null ? value : sb.toString();
+	}
+
+	/**
+	 * PrintWriter does not throw, write errors are checked at the end
+	 */
+	public void end() throws IOException {
+		out.close();
+		if(out.checkError()) {
+			throw new IOException("Could not write the edge list.");
+		}
+	}
+}
@@ -1,88 +1,215 @@
 package org.regin.creator.graph;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * 
+ * Nodes are stored with dense int indices in the order they are added,
+ * node identifiers are kept once in an id table. Edges are stored as
+ * parallel arrays of source and target node indices. Node and edge
+ * attributes are kept column-wise in one {@link AttributeStore} each.
+ * {@link Node} and {@link Edge} objects are light-weight views on this
+ * storage that are created when needed.
  * @author Thomas
  *
  */
 public class Graph extends AttributeHolder {
 	String title = "";
-	
-	Map<String, Node> nodes = new HashMap<String, Node>();
-	Map<String, Edge> edges = new HashMap<String, Edge>();
+	String id;
+
+	Map<String, Integer> nodeIndex = new HashMap<String, Integer>();
+	List<String> nodeIds = new ArrayList<String>();
+	AttributeStore nodeAttributes = new AttributeStore();
+
+	int [] edgeSrc = new int[1024];
+	int [] edgeTgt = new int[1024];
+	int edgeCount = 0;
+	AttributeStore edgeAttributes = new AttributeStore();
+	boolean storeEdges = true;
 
 	public void setTitle(String title) {
 		this.title = title;
 	}
-	
+
 	public String getTitle() {
 		return title;
 	}
-	
+
+	/**
+	 * id of the graph element, if it is not set
+	 * the time of writing is used
+	 */
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * if false, edges created with addEdge are numbered
+	 * but not kept in the graph (e.g. when they are directly written)
+	 */
+	public void setStoreEdges(boolean storeEdges) {
+		this.storeEdges = storeEdges;
+	}
+
 	public Node addNode(String id) {
-		Node n = nodes.get(id);
-		if(n == null) { 
-			n = new Node(id);
-			nodes.put(id, n);
+		Integer index = nodeIndex.get(id);
+		if(index == null) {
+			index = nodeIds.size();
+			nodeIndex.put(id, index);
+			nodeIds.add(id);
+			nodeAttributes.addRow();
+		}
+		return new Node(index);
+	}
+
+	/**
+	 * adds a new edge, the id of the edge is its index
+	 */
+	public Edge addEdge(Node src, Node tgt) {
+		int index = edgeCount++;
+		int row;
+		if(storeEdges) {
+			if(index == edgeSrc.length) {
+				edgeSrc = Arrays.copyOf(edgeSrc, index * 2);
+				edgeTgt = Arrays.copyOf(edgeTgt, index * 2);
+			}
+			edgeSrc[index] = src.index;
+			edgeTgt[index] = tgt.index;
+			row = edgeAttributes.addRow();
+		} else {
+			// all edges that are not kept share one row
+			if(edgeAttributes.getRowCount() == 0) {
+				edgeAttributes.addRow();
+			}
+			row = 0;
+			edgeAttributes.clearRow(row);
 		}
-		return n;
+		return new Edge(index, row, src.index, tgt.index);
 	}
-	
-	public Edge addEdge(String id, Node src, Node tgt) {
-		Edge e = edges.get(id);
-		if(e == null) {
-			e = new Edge(id, src, tgt);
-			edges.put(id, e);
-		}
-		return e;
+
+	public Node getNode(String id) {
+		Integer index = nodeIndex.get(id);
+		return index == null ? null : new Node(index);
+	}
+
+	public Node getNode(int index) { return new Node(index); }
+
+	public Edge getEdge(int index) {
+		return new Edge(index, index, edgeSrc[index], edgeTgt[index]);
+	}
+
+	public int getNodeCount() { return nodeIds.size(); }
+	public int getEdgeCount() { return storeEdges ? edgeCount : 0; }
+
+	public Collection<Node> getNodes() {
+		return new AbstractList<Node>() {
+			public Node get(int index) { return getNode(index); }
+			public int size() { return getNodeCount(); }
+		};
 	}
-	
-	public Node getNode(String id) { return nodes.get(id); }
-	
-	public Collection<Node> getNodes() { return nodes.values(); }
-	public Collection<Edge> getEdges() { return edges.values(); }
-	
+
+	public Collection<Edge> getEdges() {
+		return new AbstractList<Edge>() {
+			public Edge get(int index) { return getEdge(index); }
+			public int size() { return getEdgeCount(); }
+		};
+	}
+
 	public class Node extends AttributeHolder {
-		String id;
-		
-		public Node(String id) {
-			this.id = id;
+		int index;
+
+		Node(int index) {
+			super(null);
+			this.index = index;
+		}
+
+		public void setAttribute(String name, String value) {
+			nodeAttributes.set(index, name, value);
 		}
-		
+
+		public Object getAttribute(String name) {
+			return nodeAttributes.get(index, name);
+		}
+
+		public Set<String> getAttributeNames() {
+			return nodeAttributes.getNames(index);
+		}
+
 		public String getId() {
-			return id;
+			return nodeIds.get(index);
+		}
+
+		/**
+		 * position of the node in the order the nodes were
+		 * added to the graph
+		 */
+		public int getIndex() {
+			return index;
 		}
-		
+
 		public int hashCode() {
-			return id.hashCode();
+			return index;
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof Node && ((Node)o).index == index && ((Node)o).getGraph() == getGraph();
+		}
+
+		private Graph getGraph() {
+			return Graph.this;
 		}
 	}
-	
+
 	public class Edge extends AttributeHolder {
-		String id;
-		Node src;
-		Node tgt;
-		
-		public Edge(String id, Node src, Node tgt) {
-			this.id = id;
+		int index;
+		int row;
+		int src;
+		int tgt;
+
+		Edge(int index, int row, int src, int tgt) {
+			super(null);
+			this.index = index;
+			this.row = row;
 			this.src = src;
 			this.tgt = tgt;
 		}
-		
+
+		public void setAttribute(String name, String value) {
+			edgeAttributes.set(row, name, value);
+		}
+
+		public Object getAttribute(String name) {
+			return edgeAttributes.get(row, name);
+		}
+
+		public Set<String> getAttributeNames() {
+			return edgeAttributes.getNames(row);
+		}
+
 		public Node getSrc() {
-			return src;
+			return new Node(src);
 		}
-		
+
 		public Node getTgt() {
-			return tgt;
+			return new Node(tgt);
 		}
-		
+
 		public String getId() {
-			return id;
+			return String.valueOf(index);
+		}
+
+		public int getIndex() {
+			return index;
 		}
 	}
 }
@@ -0,0 +1,51 @@
+package org.regin.creator.graph;
+
+import java.io.File;
+
+import org.regin.creator.graph.Graph.Edge;
+import org.regin.creator.graph.Graph.Node;
+
+/**
+ * Output format of a network. Implementations are found with
+ * {@link java.util.ServiceLoader} (META-INF/services/org.regin.creator.graph.GraphWriter)
+ * and need a public constructor without arguments.
+ * 
+ * A writer gets start, then every node, then every edge and finally end.
+ * If several formats are written at once each writer runs on its own
+ * thread, the graph is not changed while it is written.
+ * @author Thomas
+ *
+ */
+public interface GraphWriter {
+
+	/**
+	 * name of the format (e.g. xgmml) as used on the command line
+	 */
+	public String getFormat();
+
+	/**
+	 * file extension of the format including the dot
+	 */
+	public String getExtension();
+
+	/**
+	 * true if the writer only uses the nodes and edges that are passed 
+	 * to it, false if it needs the complete graph (node and edge counts,
+	 * attribute columns) in start or end
+	 */
+	public boolean isStreaming();
+
+	/**
+	 * threads that compress or render the output file, 
+	 * {@link org.regin.creator.utils.Utils#getOutputThreads()} if it is not set
+	 */
+	public void setOutputThreads(int threads);
+
+	public void start(Graph graph, File output) throws Exception;
+
+	public void writeNode(Node node) throws Exception;
+
+	public void writeEdge(Edge edge) throws Exception;
+
+	public void end() throws Exception;
+}
@@ -0,0 +1,280 @@
+package org.regin.creator.graph;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.regin.creator.utils.Utils;
+
+/**
+ * Finds the available {@link GraphWriter}s and writes a graph in 
+ * several formats at once. The graph is traversed once, batches of
+ * nodes and edges are handed to all writers which run in parallel.
+ * Nodes and edges are traversed in the order they were added or
+ * sorted by id.
+ * @author Thomas
+ *
+ */
+public class GraphWriters {
+	private final static int BATCH_SIZE = 1024;
+	private final static int QUEUE_SIZE = 16;
+	private final static List<AttributeHolder> END = new ArrayList<AttributeHolder>();
+
+	/**
+	 * new instances of all writers on the class path
+	 */
+	public static List<GraphWriter> load() {
+		List<GraphWriter> writers = new ArrayList<GraphWriter>();
+		for(GraphWriter w : ServiceLoader.load(GraphWriter.class)) {
+			writers.add(w);
+		}
+		return writers;
+	}
+
+	/**
+	 * writers for the given formats (comma separated), if formats is null
+	 * the format is chosen by the extension of the output file (default xgmml). 
+	 * The output file is used for the format with the same extension, the 
+	 * other formats are written next to it with their own extension.
+	 * A trailing .gz is ignored to find the format and added to the names
+	 * of the other formats (out.xgmml.gz, sif: out.sif.gz), except for the
+	 * binary format which can not be compressed.
+	 */
+	public static Map<GraphWriter, File> getWriters(File output, String formats) {
+		return getWriters(output, formats, Utils.getOutputThreads());
+	}
+
+	/**
+	 * @param threads threads that compress or render each output file
+	 */
+	public static Map<GraphWriter, File> getWriters(File output, String formats, int threads) {
+		List<GraphWriter> writers = load();
+		for(GraphWriter w : writers) {
+			w.setOutputThreads(threads);
+		}
+		String name = output.getName();
+		String gz = "";
+		if(Utils.isCompressed(output)) {
+			gz = name.substring(name.length() - 3);
+			name = name.substring(0, name.length() - 3);
+		}
+		GraphWriter outputWriter = null;
+		for(GraphWriter w : writers) {
+			if(outputWriter == null && name.endsWith(w.getExtension())) {
+				outputWriter = w;
+			}
+		}
+		if(outputWriter == null) {
+			outputWriter = find(writers, "xgmml");
+		}
+		if(outputWriter instanceof BinaryGraphWriter && !gz.equals("")) {
+			throw new IllegalArgumentException("The binary format can not be compressed: " + output);
+		}
+
+		Map<GraphWriter, File> result = new LinkedHashMap<GraphWriter, File>();
+		if(formats == null || formats.trim().equals("")) {
+			result.put(outputWriter, output);
+			return result;
+		}
+		if(outputWriter != null && name.endsWith(outputWriter.getExtension())) {
+			name = name.substring(0, name.length() - outputWriter.getExtension().length());
+		}
+		for(String format : formats.split(",")) {
+			GraphWriter w = find(writers, format.trim());
+			if(w == null) {
+				throw new IllegalArgumentException("Unknown output format: " + format.trim());
+			}
+			if(w == outputWriter) {
+				result.put(w, output);
+			} else if(!result.containsKey(w)) {
+				String extension = w.getExtension() + (w instanceof BinaryGraphWriter ? "" : gz);
+				result.put(w, new File(output.getAbsoluteFile().getParentFile(), name + extension));
+			}
+		}
+		return result;
+	}
+
+	private static GraphWriter find(List<GraphWriter> writers, String format) {
+		for(GraphWriter w : writers) {
+			if(w.getFormat().equalsIgnoreCase(format)) {
+				return w;
+			}
+		}
+		return null;
+	}
+
+	public static void write(Graph graph, Map<GraphWriter, File> outputs) throws Exception {
+		write(graph, outputs, false);
+	}
+
+	/**
+	 * @param sorted nodes are written ordered by id and edges
+	 * by source id and target id
+	 */
+	public static void write(Graph graph, Map<GraphWriter, File> outputs, boolean sorted) throws Exception {
+		int [] nodeOrder = sorted ? sortNodes(graph) : null;
+		int [] edgeOrder = sorted ? sortEdges(graph, nodeOrder) : null;
+		int nodeCount = graph.getNodeCount();
+		int edgeCount = graph.getEdgeCount();
+
+		if(outputs.size() == 1) {
+			Map.Entry<GraphWriter, File> e = outputs.entrySet().iterator().next();
+			GraphWriter writer = e.getKey();
+			writer.start(graph, e.getValue());
+			for(int i = 0; i < nodeCount; i++) {
+				writer.writeNode(graph.getNode(nodeOrder == null ? i : nodeOrder[i]));
+			}
+			for(int i = 0; i < edgeCount; i++) {
+				writer.writeEdge(graph.getEdge(edgeOrder == null ? i : edgeOrder[i]));
+			}
+			writer.end();
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(outputs.size());
+		try {
+			List<BlockingQueue<List<AttributeHolder>>> queues = new ArrayList<BlockingQueue<List<AttributeHolder>>>();
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for(Map.Entry<GraphWriter, File> e : outputs.entrySet()) {
+				BlockingQueue<List<AttributeHolder>> queue = new ArrayBlockingQueue<List<AttributeHolder>>(QUEUE_SIZE);
+				queues.add(queue);
+				futures.add(executor.submit(new Consumer(graph, e.getKey(), e.getValue(), queue)));
+			}
+
+			List<AttributeHolder> batch = new ArrayList<AttributeHolder>(BATCH_SIZE);
+			for(int i = 0; i < nodeCount + edgeCount; i++) {
+				if(i < nodeCount) {
+					batch.add(graph.getNode(nodeOrder == null ? i : nodeOrder[i]));
+				} else {
+					int edge = i - nodeCount;
+					batch.add(graph.getEdge(edgeOrder == null ? edge : edgeOrder[edge]));
+				}
+				if(batch.size() == BATCH_SIZE) {
+					publish(queues, batch);
+					batch = new ArrayList<AttributeHolder>(BATCH_SIZE);
+				}
+			}
+			if(!batch.isEmpty()) {
+				publish(queues, batch);
+			}
+			publish(queues, END);
+
+			for(Future<Void> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * node indices ordered by node id
+	 */
+	private static int [] sortNodes(final Graph graph) {
+		Integer [] order = new Integer[graph.getNodeCount()];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return graph.nodeIds.get(a).compareTo(graph.nodeIds.get(b));
+			}
+		});
+		int [] result = new int[order.length];
+		for(int i = 0; i < order.length; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+
+	/**
+	 * edge indices ordered by source id and target id, edges 
+	 * with the same source and target keep their order
+	 */
+	private static int [] sortEdges(Graph graph, int [] nodeOrder) {
+		int [] rank = new int[nodeOrder.length];
+		for(int i = 0; i < nodeOrder.length; i++) {
+			rank[nodeOrder[i]] = i;
+		}
+		final long [] keys = new long[graph.getEdgeCount()];
+		Integer [] order = new Integer[keys.length];
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = ((long) rank[graph.edgeSrc[i]] << 32) | rank[graph.edgeTgt[i]];
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return keys[a] < keys[b] ? -1 : (keys[a] == keys[b] ? 0 : 1);
+			}
+		});
+		int [] result = new int[order.length];
+		for(int i = 0; i < order.length; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+
+	private static void publish(List<BlockingQueue<List<AttributeHolder>>> queues, List<AttributeHolder> batch) throws InterruptedException {
+		for(BlockingQueue<List<AttributeHolder>> queue : queues) {
+			queue.put(batch);
+		}
+	}
+
+	/**
+	 * writes the batches of one queue, after an error the queue 
+	 * is still emptied so the traversal is not blocked
+	 */
+	private static class Consumer implements Callable<Void> {
+		private Graph graph;
+		private GraphWriter writer;
+		private File output;
+		private BlockingQueue<List<AttributeHolder>> queue;
+
+		Consumer(Graph graph, GraphWriter writer, File output, BlockingQueue<List<AttributeHolder>> queue) {
+			this.graph = graph;
+			this.writer = writer;
+			this.output = output;
+			this.queue = queue;
+		}
+
+		public Void call() throws Exception {
+			Exception error = null;
+			try {
+				writer.start(graph, output);
+			} catch (Exception e) {
+				error = e;
+			}
+			List<AttributeHolder> batch;
+			while((batch = queue.take()) != END) {
+				if(error != null) continue;
+				try {
+					for(AttributeHolder element : batch) {
+						if(element instanceof Graph.Node) {
+							writer.writeNode((Graph.Node) element);
+						} else {
+							writer.writeEdge((Graph.Edge) element);
+						}
+					}
+				} catch (Exception e) {
+					error = e;
+				}
+			}
+			if(error != null) {
+				throw error;
+			}
+			writer.end();
+			return null;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package org.regin.creator.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import org.regin.creator.graph.Graph.Edge;
+import org.regin.creator.graph.Graph.Node;
+import org.regin.creator.utils.Utils;
+
+/**
+ * Writes the network in the simple interaction format (SIF):
+ * source, interaction type and target of every edge separated by tabs.
+ * @author Thomas
+ *
+ */
+public class SIFWriter implements GraphWriter {
+
+	private PrintWriter out;
+	private int threads = Utils.getOutputThreads();
+
+	public String getFormat() {
+		return "sif";
+	}
+
+	public String getExtension() {
+		return ".sif";
+	}
+
+	public boolean isStreaming() {
+		return true;
+	}
+
+	public void setOutputThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public void start(Graph graph, File output) throws IOException {
+		out = Utils.openWriter(output, threads);
+	}
+
+	public void writeNode(Node node) {
+	}
+
+	public void writeEdge(Edge edge) {
+		Object interaction = edge.getAttribute("interaction");
+		out.print(edge.getSrc().getId());
+		out.print('\t');
+		out.print(interaction == null ? "" : interaction.toString());
+		out.print('\t');
+		out.print(edge.getTgt().getId());
+		out.print('\n');
+	}
+
+	/**
+	 * PrintWriter does not throw, write errors are checked at the end
+	 */
+	public void end() throws IOException {
+		out.close();
+		if(out.checkError()) {
+			throw new IOException("Could not write the SIF file.");
+		}
+	}
+}
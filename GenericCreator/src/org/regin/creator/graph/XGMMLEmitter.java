@@ -0,0 +1,242 @@
+package org.regin.creator.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.regin.creator.graph.Graph.Edge;
+import org.regin.creator.graph.Graph.Node;
+
+/**
+ * Writes nodes and edges as UTF-8 encoded XGMML without XMLStreamWriter.
+ * The fixed parts of the elements (indentation, tags, attribute names and 
+ * types) are encoded once, only values are escaped and encoded when they 
+ * are written. The bytes are collected in a ByteBuffer that is written
+ * to the channel when it is full, without a channel the buffer grows.
+ * The output is the same as the one of {@link XGMMLWriter#writeNode(Node, javax.xml.stream.XMLStreamWriter)}
+ * and {@link XGMMLWriter#writeEdge(Edge, javax.xml.stream.XMLStreamWriter)}.
+ * @author Thomas
+ *
+ */
+public class XGMMLEmitter {
+	final static Charset UTF8 = Charset.forName("UTF-8");
+
+	private final static byte [] NODE_START = bytes("\n   <node id=\"");
+	private final static byte [] NODE_END = bytes("\n   </node>");
+	private final static byte [] EDGE_START = bytes("\n   <edge id=\"");
+	private final static byte [] EDGE_END = bytes("\n   </edge>");
+	private final static byte [] LABEL = bytes("\" label=\"");
+	private final static byte [] SOURCE = bytes("\" source=\"");
+	private final static byte [] TARGET = bytes("\" target=\"");
+	private final static byte [] START_CLOSE = bytes("\">");
+	private final static byte [] INTERACTION_START = bytes("\n      <att label=\"interaction\" name=\"interaction\" value=\"");
+	private final static byte [] INTERACTION_END = bytes("\" type=\"string\">\n      </att>");
+	private final static byte [] LIST_START = bytes("\n      <att type=\"list\" name=\"identifiers\">");
+	private final static byte [] LIST_ITEM = bytes("\n         <att type=\"string\" name=\"identifiers\" value=\"");
+	private final static byte [] LIST_END = bytes("\n      </att>");
+	private final static byte [] ATT_END = bytes("\"></att>");
+	private final static byte [] TYPE_STRING = bytes("\" type=\"string\"></att>");
+	private final static byte [] TYPE_REAL = bytes("\" type=\"real\"></att>");
+
+	private WritableByteChannel channel;
+	private ByteBuffer buffer;
+	// start of the att element of an attribute name up to the value
+	private Map<String, byte[]> templates = new HashMap<String, byte[]>();
+
+	/**
+	 * @param channel output, null to keep everything in the buffer
+	 */
+	public XGMMLEmitter(WritableByteChannel channel, int capacity) {
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(capacity);
+	}
+
+	private static byte [] bytes(String s) {
+		return s.getBytes(UTF8);
+	}
+
+	public void writeNode(Node n) throws IOException {
+		String id = n.getId();
+		put(NODE_START);
+		value(id);
+		put(LABEL);
+		value(id);
+		put(START_CLOSE);
+		writeAttributes(n);
+		put(NODE_END);
+	}
+
+	public void writeEdge(Edge edge) throws IOException {
+		String id = edge.getId();
+		put(EDGE_START);
+		value(id);
+		put(LABEL);
+		value(id);
+		put(SOURCE);
+		value(edge.getSrc().getId());
+		put(TARGET);
+		value(edge.getTgt().getId());
+		put(START_CLOSE);
+
+		Object interaction = edge.getAttribute("interaction");
+		put(INTERACTION_START);
+		value(interaction == null ? "" : interaction.toString());
+		put(INTERACTION_END);
+
+		writeAttributes(edge);
+		put(EDGE_END);
+	}
+
+	private void writeAttributes(AttributeHolder attr) throws IOException {
+		for(String a : attr.getAttributeNames()) {
+			Object o = attr.getAttribute(a);
+			if(o == null) continue;
+
+			String s = o.toString();
+			if(s.contains("[") && s.contains("]")) {
+				put(LIST_START);
+				String [] str = s.replace("[", "").replace("]", "").split(",");
+				for(int i = 0; i < str.length; i++) {
+					put(LIST_ITEM);
+					value(str[i]);
+					put(ATT_END);
+				}
+				put(LIST_END);
+			} else {
+				put(template(a));
+				value(s);
+				put(AttributeStore.isNumeric(a) || o instanceof Number ? TYPE_REAL : TYPE_STRING);
+			}
+		}
+	}
+
+	private byte [] template(String name) {
+		byte [] t = templates.get(name);
+		if(t == null) {
+			String escaped = escape(name);
+			t = bytes("\n      <att label=\"" + escaped + "\" name=\"" + escaped + "\" value=\"");
+			templates.put(name, t);
+		}
+		return t;
+	}
+
+	private static String escape(String s) {
+		StringBuilder b = new StringBuilder(s.length());
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch(c) {
+			case '<': b.append("&lt;"); break;
+			case '>': b.append("&gt;"); break;
+			case '&': b.append("&amp;"); break;
+			case '"': b.append("&quot;"); break;
+			default: b.append(c);
+			}
+		}
+		return b.toString();
+	}
+
+	private void put(byte [] bytes) throws IOException {
+		ensure(bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * escapes and encodes an attribute value
+	 */
+	private void value(String s) throws IOException {
+		int length = s.length();
+		// at most 6 bytes per character (&quot;)
+		ensure(6 * length);
+		for(int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				switch(c) {
+				case '<': putAscii("&lt;"); break;
+				case '>': putAscii("&gt;"); break;
+				case '&': putAscii("&amp;"); break;
+				case '"': putAscii("&quot;"); break;
+				default: buffer.put((byte) c);
+				}
+			} else if(c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buffer.put((byte) (0xF0 | (cp >> 18)));
+				buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (cp & 0x3F)));
+			} else if(Character.isSurrogate(c)) {
+				// unpaired surrogate, replaced like String.getBytes does
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	private void putAscii(String s) {
+		for(int i = 0; i < s.length(); i++) {
+			buffer.put((byte) s.charAt(i));
+		}
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if(buffer.remaining() >= bytes) return;
+		if(channel != null) {
+			flush();
+		}
+		if(buffer.remaining() < bytes) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+	}
+
+	/**
+	 * writes raw text, e.g. the header or the end of the document
+	 */
+	public void write(String text) throws IOException {
+		put(bytes(text));
+	}
+
+	/**
+	 * writes bytes that are already encoded, e.g. a rendered batch
+	 */
+	public void write(byte [] bytes) throws IOException {
+		put(bytes);
+	}
+
+	/**
+	 * writes the buffer to the channel
+	 */
+	public void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * content of the buffer (if there is no channel)
+	 */
+	public byte [] toByteArray() {
+		byte [] bytes = new byte[buffer.position()];
+		System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	/**
+	 * empties the buffer so it can be used for the next batch
+	 */
+	public void reset() {
+		buffer.clear();
+	}
+}
@@ -0,0 +1,235 @@
+package org.regin.creator.graph;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.regin.creator.graph.Graph.Edge;
+import org.regin.creator.graph.Graph.Node;
+import org.regin.creator.utils.Utils;
+
+/**
+ * Reads XGMML files as written by {@link XGMMLWriter} with StAX.
+ * Nested list attributes are read back into the "[id1,id2]" form
+ * that is used while a network is created.
+ * 
+ * {@link #read(File)} loads the whole network, {@link #filter(File, Filter, GraphWriter, File)}
+ * passes every node and edge to a filter and writes the accepted ones 
+ * directly without keeping attributes or edges in memory (memory still
+ * grows with the number of nodes).
+ * @author Thomas
+ *
+ */
+public class XGMMLReader {
+
+	/**
+	 * decides which nodes and edges are kept, attributes 
+	 * can be changed before the element is written
+	 */
+	public interface Filter {
+		public boolean acceptNode(Node node);
+		public boolean acceptEdge(Edge edge);
+	}
+
+	/**
+	 * receives the elements of the file in document order
+	 */
+	private interface Handler {
+		public void start(Graph graph) throws Exception;
+		public void node(String id, List<String[]> attributes) throws Exception;
+		public void edge(String source, String target, List<String[]> attributes) throws Exception;
+		public void end() throws Exception;
+	}
+
+	public static Graph read(File input) throws Exception {
+		final Graph graph = new Graph();
+		parse(input, graph, new Handler() {
+			public void start(Graph graph) {
+			}
+
+			public void node(String id, List<String[]> attributes) {
+				setAttributes(graph.addNode(id), attributes);
+			}
+
+			public void edge(String source, String target, List<String[]> attributes) {
+				Edge edge = graph.addEdge(graph.addNode(source), graph.addNode(target));
+				setAttributes(edge, attributes);
+			}
+
+			public void end() {
+			}
+		});
+		return graph;
+	}
+
+	/**
+	 * Streams the network from input to output. Node attributes are
+	 * dropped after the node is written and edges are not stored. Memory
+	 * grows with the number of nodes (ids, id index, filtered nodes and
+	 * one empty attribute row per node), not with edges or attributes.
+	 * The writer gets the nodes and edges as they are read, writers 
+	 * that need the whole network (binary, tsv) are rejected and have
+	 * to be used with {@link #read(File)}.
+	 * @return number of nodes and edges that were written
+	 * @throws IllegalArgumentException if the writer is not streaming
+	 */
+	public static int [] filter(File input, final Filter filter, final GraphWriter writer, final File output) throws Exception {
+		if(!writer.isStreaming()) {
+			throw new IllegalArgumentException("The " + writer.getFormat() + " format needs the whole network, read it with read(File).");
+		}
+		final Graph graph = new Graph();
+		graph.setStoreEdges(false);
+		final BitSet rejected = new BitSet();
+		final int [] counts = new int[2];
+		parse(input, graph, new Handler() {
+			public void start(Graph graph) throws Exception {
+				writer.start(graph, output);
+			}
+
+			public void node(String id, List<String[]> attributes) throws Exception {
+				Node node = graph.addNode(id);
+				setAttributes(node, attributes);
+				if(filter.acceptNode(node)) {
+					writer.writeNode(node);
+					counts[0]++;
+				} else {
+					rejected.set(node.getIndex());
+				}
+				graph.nodeAttributes.clearRow(node.getIndex());
+			}
+
+			public void edge(String source, String target, List<String[]> attributes) throws Exception {
+				Node src = graph.getNode(source);
+				Node tgt = graph.getNode(target);
+				// the edge is still added so it keeps its position as id
+				Edge edge = graph.addEdge(src == null ? graph.addNode(source) : src, tgt == null ? graph.addNode(target) : tgt);
+				if(src == null || tgt == null || rejected.get(src.getIndex()) || rejected.get(tgt.getIndex())) {
+					return;
+				}
+				setAttributes(edge, attributes);
+				if(filter.acceptEdge(edge)) {
+					writer.writeEdge(edge);
+					counts[1]++;
+				}
+			}
+
+			public void end() throws Exception {
+				writer.end();
+			}
+		});
+		return counts;
+	}
+
+	private static void setAttributes(AttributeHolder holder, List<String[]> attributes) {
+		for(String [] a : attributes) {
+			holder.setAttribute(a[0], a[1]);
+		}
+	}
+
+	private static void parse(File input, Graph graph, Handler handler) throws Exception {
+		// the parser reads the encoding from the XML declaration
+		InputStream in = Utils.openInputStream(input);
+		XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+		try {
+			boolean started = false;
+			// 0 = graph, 1 = node, 2 = edge
+			int element = 0;
+			String id = null;
+			String source = null;
+			String target = null;
+			List<String[]> attributes = new ArrayList<String[]>();
+			int attDepth = 0;
+			String listName = null;
+			StringBuilder list = new StringBuilder();
+
+			while(reader.hasNext()) {
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					if(name.equals("att")) {
+						attDepth++;
+						if(attDepth == 1 && "list".equals(reader.getAttributeValue(null, "type"))) {
+							listName = reader.getAttributeValue(null, "name");
+							list.setLength(0);
+						} else if(attDepth == 1) {
+							String value = reader.getAttributeValue(null, "value");
+							attributes.add(new String[] {reader.getAttributeValue(null, "name"), value == null ? "" : value});
+						} else if(listName != null) {
+							list.append(list.length() == 0 ? "[" : ",");
+							list.append(reader.getAttributeValue(null, "value"));
+						}
+					} else if(name.equals("graph")) {
+						String label = reader.getAttributeValue(null, "label");
+						graph.setTitle(label == null ? "" : label);
+						graph.setId(reader.getAttributeValue(null, "id"));
+					} else if(name.equals("node") || name.equals("edge")) {
+						if(!started) {
+							setAttributes(graph, attributes);
+							handler.start(graph);
+							started = true;
+						}
+						attributes.clear();
+						id = reader.getAttributeValue(null, "id");
+						if(name.equals("node")) {
+							element = 1;
+						} else {
+							element = 2;
+							source = reader.getAttributeValue(null, "source");
+							target = reader.getAttributeValue(null, "target");
+						}
+					}
+				} else if(event == XMLStreamConstants.END_ELEMENT) {
+					String name = reader.getLocalName();
+					if(name.equals("att")) {
+						if(attDepth == 1 && listName != null) {
+							attributes.add(new String[] {listName, list.length() == 0 ? "[]" : list.append("]").toString()});
+							listName = null;
+						}
+						attDepth--;
+					} else if(name.equals("node") && element == 1) {
+						handler.node(id, attributes);
+						attributes.clear();
+						element = 0;
+					} else if(name.equals("edge") && element == 2) {
+						removeInteraction(attributes);
+						handler.edge(source, target, attributes);
+						attributes.clear();
+						element = 0;
+					} else if(name.equals("graph")) {
+						if(!started) {
+							setAttributes(graph, attributes);
+							handler.start(graph);
+							started = true;
+						}
+						handler.end();
+					}
+				}
+			}
+		} finally {
+			reader.close();
+			in.close();
+		}
+	}
+
+	/**
+	 * XGMMLWriter writes the interaction of an edge first and again 
+	 * with the other attributes, the first one is dropped so the 
+	 * attributes keep their order
+	 */
+	private static void removeInteraction(List<String[]> attributes) {
+		if(attributes.size() > 1 && attributes.get(0)[0].equals("interaction")) {
+			for(int i = 1; i < attributes.size(); i++) {
+				if(attributes.get(i)[0].equals("interaction")) {
+					attributes.remove(0);
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package org.regin.creator.graph;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.regin.creator.graph.Graph.Edge;
+import org.regin.creator.graph.Graph.Node;
+import org.regin.creator.utils.ExternalSorter;
+import org.regin.creator.utils.FlightRecorder;
+
+/**
+ * Writes a XGMML file while the network is still being created.
+ * Nodes are written directly to the output, edges are spilled
+ * to a temporary file and appended after the node section when
+ * the writer is closed. The output is the same as the one
+ * of {@link XGMMLWriter}.
+ * In sorted mode nodes (by id) and edges (by source and target id) 
+ * are sorted with an {@link ExternalSorter} before they are written.
+ * The temporary files are removed by {@link #close()}, also if it fails,
+ * and by {@link #abort()} if the conversion fails.
+ * @author Thomas
+ *
+ */
+public class XGMMLStreamWriter {
+
+	private Writer out;
+	private XMLStreamWriter nodeWriter;
+
+	private File edgeFile;
+	private Writer edgeOut;
+	private XMLStreamWriter edgeWriter;
+
+	private ExternalSorter nodeSorter;
+	private ExternalSorter edgeSorter;
+	private StringWriter fragment;
+	private XMLStreamWriter fragmentWriter;
+	private FlightRecorder.WriteBatch events = new FlightRecorder.WriteBatch("xgmml", 1024);
+	private boolean closed = false;
+
+	/**
+	 * writes the graph element and the network attributes
+	 * of graph, network attributes have to be set before
+	 */
+	public XGMMLStreamWriter(Graph graph, Writer out) throws IOException, XMLStreamException, FactoryConfigurationError {
+		this(graph, out, false);
+	}
+
+	public XGMMLStreamWriter(Graph graph, Writer out, boolean sorted) throws IOException, XMLStreamException, FactoryConfigurationError {
+		this.out = out;
+		nodeWriter = XGMMLWriter.writeHeader(graph, out);
+		if(sorted) {
+			nodeSorter = new ExternalSorter();
+			edgeSorter = new ExternalSorter();
+			fragment = new StringWriter();
+			fragmentWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(fragment);
+			return;
+		}
+
+		edgeFile = File.createTempFile("regin-edges", ".xgmml");
+		edgeFile.deleteOnExit();
+		edgeOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(edgeFile), "UTF-8"));
+		edgeWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(edgeOut);
+	}
+
+	public void writeNode(Node node) throws XMLStreamException, IOException {
+		events.addNode();
+		if(nodeSorter != null) {
+			XGMMLWriter.writeNode(node, fragmentWriter);
+			nodeSorter.add(node.getId(), takeFragment());
+		} else {
+			XGMMLWriter.writeNode(node, nodeWriter);
+		}
+	}
+
+	public void writeEdge(Edge edge) throws XMLStreamException, IOException {
+		events.addEdge();
+		if(edgeSorter != null) {
+			XGMMLWriter.writeEdge(edge, fragmentWriter);
+			edgeSorter.add(edge.getSrc().getId() + "\0" + edge.getTgt().getId(), takeFragment());
+		} else {
+			XGMMLWriter.writeEdge(edge, edgeWriter);
+		}
+	}
+
+	private String takeFragment() throws XMLStreamException {
+		fragmentWriter.flush();
+		String s = fragment.toString();
+		fragment.getBuffer().setLength(0);
+		return s;
+	}
+
+	/**
+	 * appends the spilled edges after the nodes, closes the
+	 * graph element and removes the temporary files
+	 */
+	public void close() throws XMLStreamException, IOException {
+		closed = true;
+		try {
+			events.commit();
+			// make sure the graph start tag is closed before raw content is appended
+			nodeWriter.writeCharacters("");
+			nodeWriter.flush();
+			if(nodeSorter != null) {
+				nodeSorter.writeSorted(out);
+				edgeSorter.writeSorted(out);
+			} else {
+				edgeWriter.close();
+				edgeOut.close();
+
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(edgeFile), "UTF-8"));
+				try {
+					char [] buffer = new char[8192];
+					int read;
+					while((read = reader.read(buffer)) != -1) {
+						out.write(buffer, 0, read);
+					}
+				} finally {
+					reader.close();
+				}
+			}
+			out.write("\n</graph>");
+			out.flush();
+			nodeWriter.close();
+		} finally {
+			deleteTemporaryFiles();
+		}
+	}
+
+	/**
+	 * removes the temporary files of a writer that was not closed,
+	 * the output is left incomplete
+	 */
+	public void abort() {
+		if(closed) return;
+		closed = true;
+		if(edgeOut != null) {
+			try {
+				edgeOut.close();
+			} catch (IOException e) {
+				// the file is deleted anyway
+			}
+		}
+		deleteTemporaryFiles();
+	}
+
+	private void deleteTemporaryFiles() {
+		if(edgeFile != null) {
+			edgeFile.delete();
+		}
+		if(nodeSorter != null) {
+			nodeSorter.discard();
+			edgeSorter.discard();
+		}
+	}
+}
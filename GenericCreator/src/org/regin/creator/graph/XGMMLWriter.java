@@ -1,7 +1,21 @@
 package org.regin.creator.graph;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
 
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLOutputFactory;
@@ -10,78 +24,243 @@ import javax.xml.stream.XMLStreamWriter;
 
 import org.regin.creator.graph.Graph.Edge;
 import org.regin.creator.graph.Graph.Node;
+import org.regin.creator.utils.FlightRecorder;
+import org.regin.creator.utils.Utils;
 
 
 /**
- * 
+ * As {@link GraphWriter} nodes and edges are written with the
+ * {@link XGMMLEmitter} as UTF-8 independent of the default charset, the
+ * encoding is declared in the XML declaration (otherwise the file is the 
+ * same as the one written with XMLStreamWriter). Nodes and edges of 
+ * a complete graph are rendered in batches on several threads, every 
+ * batch into its own byte buffer. The buffers are written in order.
  * @author Thomas
  *
  */
-public class XGMMLWriter {
+public class XGMMLWriter implements GraphWriter {
+	private final static Logger log = Logger.getLogger(XGMMLWriter.class.getName());
 	final static String NS = "http://www.cs.rpi.edu/XGMML";
+	private final static int BATCH_SIZE = 1024;
+	private final static int BUFFER_SIZE = 1024 * 1024;
+	
+	private int threads;
+	
+	private WritableByteChannel channel;
+	private XGMMLEmitter emitter;
+	private ExecutorService executor;
+	private LinkedList<Future<byte[]>> pending;
+	private List<AttributeHolder> batch;
+	private FlightRecorder.WriteBatch events = new FlightRecorder.WriteBatch("xgmml", BATCH_SIZE);
+	
+	public XGMMLWriter() {
+		this(Utils.getOutputThreads());
+	}
+	
+	public XGMMLWriter(int threads) {
+		this.threads = threads;
+	}
+	
+	public String getFormat() {
+		return "xgmml";
+	}
+	
+	public String getExtension() {
+		return ".xgmml";
+	}
+
+	public boolean isStreaming() {
+		return true;
+	}
+
+	public void setOutputThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	/**
+	 * edges that are not stored in the graph share their attributes, 
+	 * so they are only rendered in parallel if the graph stores edges
+	 */
+	public void start(Graph graph, File output) throws IOException, XMLStreamException, FactoryConfigurationError {
+		if(Utils.isCompressed(output)) {
+			channel = Channels.newChannel(Utils.openStream(output, threads));
+		} else {
+			channel = new FileOutputStream(output).getChannel();
+		}
+		emitter = new XGMMLEmitter(channel, BUFFER_SIZE);
+		StringWriter header = new StringWriter();
+		XMLStreamWriter w = writeHeader(graph, header, "UTF-8");
+		// close the graph start tag
+		w.writeCharacters("");
+		w.flush();
+		emitter.write(header.toString());
+		if(threads > 1 && graph.storeEdges) {
+			executor = Executors.newFixedThreadPool(threads);
+			pending = new LinkedList<Future<byte[]>>();
+			batch = new ArrayList<AttributeHolder>(BATCH_SIZE);
+		} else if(threads > 1) {
+			log.info(output + " is rendered on one thread, the edges are not stored in the graph.\n");
+		}
+	}
+	
+	public void writeNode(Node node) throws Exception {
+		events.addNode();
+		if(executor != null) {
+			add(node);
+		} else {
+			emitter.writeNode(node);
+		}
+	}
+	
+	public void writeEdge(Edge edge) throws Exception {
+		events.addEdge();
+		if(executor != null) {
+			add(edge);
+		} else {
+			emitter.writeEdge(edge);
+		}
+	}
+	
+	public void end() throws Exception {
+		events.commit();
+		try {
+			if(executor != null) {
+				submitBatch();
+				while(!pending.isEmpty()) {
+					emitter.write(pending.removeFirst().get());
+				}
+			}
+			emitter.write("\n</graph>");
+			emitter.flush();
+		} finally {
+			if(executor != null) {
+				executor.shutdownNow();
+				executor = null;
+			}
+			channel.close();
+		}
+	}
+	
+	private void add(AttributeHolder element) throws Exception {
+		batch.add(element);
+		if(batch.size() == BATCH_SIZE) {
+			submitBatch();
+			// limits the rendered buffers that wait to be written
+			while(pending.size() > threads * 2) {
+				emitter.write(pending.removeFirst().get());
+			}
+		}
+	}
+	
+	private void submitBatch() {
+		if(batch.isEmpty()) return;
+		final List<AttributeHolder> elements = batch;
+		pending.add(executor.submit(new Callable<byte[]>() {
+			public byte[] call() throws Exception {
+				XGMMLEmitter e = new XGMMLEmitter(null, elements.size() * 512);
+				for(AttributeHolder element : elements) {
+					if(element instanceof Node) {
+						e.writeNode((Node) element);
+					} else {
+						e.writeEdge((Edge) element);
+					}
+				}
+				return e.toByteArray();
+			}
+		}));
+		batch = new ArrayList<AttributeHolder>(BATCH_SIZE);
+	}
 	
 	public static <N, E> void write(Graph graph, PrintWriter out) throws IOException, XMLStreamException, FactoryConfigurationError {
 		
+		XMLStreamWriter writer = writeHeader(graph, out);
+		
+		//Create the nodes
+		for(Node n : graph.getNodes()) {
+			writeNode(n, writer);
+		}
+		
+		//Create the edges
+		for(Edge edge : graph.getEdges()) {
+			writeEdge(edge, writer);
+		}
+		writer.writeCharacters("\n");
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.close();
+	}
+	
+	/**
+	 * writes the start of the document and the graph element
+	 * including the network attributes
+	 */
+	static XMLStreamWriter writeHeader(Graph graph, Writer out) throws XMLStreamException, FactoryConfigurationError {
+		return writeHeader(graph, out, null);
+	}
+
+	/**
+	 * @param encoding declared encoding of the document, null for none
+	 */
+	static XMLStreamWriter writeHeader(Graph graph, Writer out, String encoding) throws XMLStreamException, FactoryConfigurationError {
 		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
-		writer.writeStartDocument();
+		if(encoding == null) {
+			writer.writeStartDocument();
+		} else {
+			writer.writeStartDocument(encoding, "1.0");
+		}
 		writer.writeCharacters("\n");
 		writer.writeStartElement("graph");
 		writer.writeDefaultNamespace(NS);
-		writer.writeAttribute("id", "" + System.currentTimeMillis());
+		writer.writeAttribute("id", graph.getId() != null ? graph.getId() : "" + System.currentTimeMillis());
 		writer.writeAttribute("label", graph.getTitle());
 
 		printAttributes(graph, writer, 1);
-		
-		//Create the nodes
-		for(Node n : graph.getNodes()) {
-			writer.writeCharacters("\n");
-			writer.writeCharacters("   ");
-			writer.writeStartElement("node");
-			writer.writeAttribute("id", n.getId());
-			writer.writeAttribute("label", n.getId());
+		return writer;
+	}
 
-			printAttributes(n, writer, 2);
-			
-			writer.writeCharacters("\n");
-			writer.writeCharacters("   ");
-			writer.writeEndElement();
-		}
+	static void writeNode(Node n, XMLStreamWriter writer) throws XMLStreamException {
+		writer.writeCharacters("\n");
+		writer.writeCharacters("   ");
+		writer.writeStartElement("node");
+		writer.writeAttribute("id", n.getId());
+		writer.writeAttribute("label", n.getId());
+
+		printAttributes(n, writer, 2);
 		
-		//Create the edges
-		for(Edge edge : graph.getEdges()) {
-			Node src = edge.getSrc();
-			Node tgt = edge.getTgt();
-			writer.writeCharacters("\n");
-			writer.writeCharacters("   ");
-			writer.writeStartElement("edge");
-			writer.writeAttribute("id", edge.getId());
-			writer.writeAttribute("label", edge.getId());
-			writer.writeAttribute("source", src.getId());
-			writer.writeAttribute("target", tgt.getId());
-			
-			Object interaction = edge.getAttribute("interaction");
-			writer.writeCharacters("\n");
-			writer.writeCharacters("      ");
-			writer.writeStartElement("att");
-			writer.writeAttribute("label", "interaction");
-			writer.writeAttribute("name", "interaction");
-			writer.writeAttribute("value", interaction == null ? "" : interaction.toString());	
-			writer.writeAttribute("type", "string");
+		writer.writeCharacters("\n");
+		writer.writeCharacters("   ");
+		writer.writeEndElement();
+	}
+	
+	static void writeEdge(Edge edge, XMLStreamWriter writer) throws XMLStreamException {
+		Node src = edge.getSrc();
+		Node tgt = edge.getTgt();
+		writer.writeCharacters("\n");
+		writer.writeCharacters("   ");
+		writer.writeStartElement("edge");
+		writer.writeAttribute("id", edge.getId());
+		writer.writeAttribute("label", edge.getId());
+		writer.writeAttribute("source", src.getId());
+		writer.writeAttribute("target", tgt.getId());
+		
+		Object interaction = edge.getAttribute("interaction");
+		writer.writeCharacters("\n");
+		writer.writeCharacters("      ");
+		writer.writeStartElement("att");
+		writer.writeAttribute("label", "interaction");
+		writer.writeAttribute("name", "interaction");
+		writer.writeAttribute("value", interaction == null ? "" : interaction.toString());	
+		writer.writeAttribute("type", "string");
 
-			writer.writeCharacters("\n");
-			writer.writeCharacters("      ");
-			writer.writeEndElement();
-			
-			printAttributes(edge, writer, 2);
+		writer.writeCharacters("\n");
+		writer.writeCharacters("      ");
+		writer.writeEndElement();
+		
+		printAttributes(edge, writer, 2);
 
-			writer.writeCharacters("\n");
-			writer.writeCharacters("   ");
-			writer.writeEndElement();
-		}
 		writer.writeCharacters("\n");
+		writer.writeCharacters("   ");
 		writer.writeEndElement();
-		writer.writeEndDocument();
-		writer.close();
 	}
 	
 	private static void printAttributes(AttributeHolder attr, XMLStreamWriter writer, int depth) throws XMLStreamException {
@@ -119,7 +298,7 @@ public class XGMMLWriter {
 				writer.writeAttribute("label", a);
 				writer.writeAttribute("name", a);
 				writer.writeAttribute("value", "" + o);
-				if(a.equals("context+ score") || a.equals("score") || a.equals("pvalue")) {
+				if(AttributeStore.isNumeric(a)) {
 					writer.writeAttribute("type", "real");
 				} else {
 					writer.writeAttribute("type", type);
@@ -2,9 +2,12 @@ package org.regin.creator.utils;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.regin.creator.graph.Graph;
+import org.regin.creator.graph.GraphWriter;
+import org.regin.creator.graph.GraphWriters;
 import org.regin.creator.graph.XGMMLWriter;
 
 import uk.co.flamingpenguin.jewel.cli.ArgumentValidationException;
@@ -43,33 +46,160 @@ public class ArgsParser {
 		public boolean isOutput();
 	}
 	
+	public interface AStream {
+		@Option(description = "Write nodes and edges while the input file is read instead of building the full network in memory first.")
+		public boolean getStream();
+	}
+	
+	public interface AParallel {
+		@Option(description = "Number of threads used to parse the input file.", defaultValue = "1")
+		public int getThreads();
+	}
+	
+	public interface ACache {
+		@Option(longName = "cache", description = "Directory of the persistent BridgeDb mapping cache.")
+		public File getCache();
+		public boolean isCache();
+	}
+	
+	public interface ABulk {
+		@Option(description = "Map all identifiers of the input file in batches before the network is created.")
+		public boolean getBulk();
+	}
+	
+	public interface AConnections {
+		@Option(description = "Number of connections per BridgeDb database, identifiers are mapped in the background if larger than 1.", defaultValue = "1")
+		public int getConnections();
+	}
+	
+	public interface ABatch {
+		@Option(description = "Manifest file with one conversion per line (input, config and output file separated by tabs).")
+		public File getBatch();
+		public boolean isBatch();
+		
+		@Option(description = "Number of conversions that run at the same time in batch mode (0 = number of processors).", defaultValue = "0")
+		public int getJobs();
+	}
+	
+	public interface AMerge {
+		@Option(description = "Manifest file with several sources (input and config file separated by tabs) that are merged into one network.")
+		public File getMerge();
+		public boolean isMerge();
+	}
+	
+	public interface AIncremental {
+		@Option(description = "Compare the input with the index of the previous build (output + \".index\") and only map new identifiers.")
+		public boolean getIncremental();
+	}
+	
+	public interface ATrace {
+		@Option(description = "Write every created node and its BridgeDb aliases to the log file (slow).")
+		public boolean getTrace();
+	}
+	
+	public interface AFormat {
+		@Option(description = "Comma separated output formats that are written at once (e.g. xgmml,sif,tsv), the files are named after the output file.")
+		public String getFormat();
+		public boolean isFormat();
+	}
+	
+	public interface ASorted {
+		@Option(description = "Write nodes sorted by id and edges sorted by source and target id with a graph id that does not change between runs.")
+		public boolean getSorted();
+	}
+	
+	public interface ARecording {
+		@Option(longName = "jfr", description = "Record JDK Flight Recorder events (Java 11 or newer) of the conversion to this file.")
+		public File getRecording();
+		public boolean isRecording();
+	}
+	
 	public interface GraphBuilder {
 		public Graph buildGraph(File in) throws Exception;
 	}
 	
-	private interface GraphWriter {
-		public void write(Graph g, PrintWriter out) throws Exception;
+	public interface GraphStreamer {
+		/**
+		 * @return false if the conversion failed
+		 */
+		public boolean streamGraph(File in, PrintWriter out) throws Exception;
 	}
 	
-	private static class XGMML implements GraphWriter {
-		public void write(Graph g, PrintWriter out) throws Exception { XGMMLWriter.write(g, out); }
+	/**
+	 * false if the output format can not be written while the network is created
+	 */
+	public static boolean canStream(AFilesOut fo, String formats) {
+		if(!fo.isOutput()) return formats == null;
+		Map<GraphWriter, File> writers = GraphWriters.getWriters(fo.getOutput(), formats);
+		return writers.size() == 1 && writers.keySet().iterator().next() instanceof XGMMLWriter;
 	}
 	
 	/**
-	 * writes xgmml file
+	 * writes the network in the format of the output file (xgmml by default)
 	 * @param fi
 	 * @param fo
 	 * @param gb
 	 * @throws Exception
 	 */
 	public static void convertAndWrite(AFilesIn fi, AFilesOut fo, GraphBuilder gb) throws Exception {
-		GraphWriter writer = new XGMML();
+		convertAndWrite(fi, fo, null, false, gb);
+	}
+	
+	/**
+	 * writes the network in all formats at once
+	 * @param formats comma separated formats, null for the format of the output file
+	 * @param sorted nodes and edges are written ordered by id
+	 * @see GraphWriters#getWriters(File, String)
+	 */
+	public static void convertAndWrite(AFilesIn fi, AFilesOut fo, String formats, boolean sorted, GraphBuilder gb) throws Exception {
+		convertAndWrite(fi, fo, formats, sorted, Utils.getOutputThreads(), gb);
+	}
+	
+	/**
+	 * @param threads threads that compress or render each output file
+	 */
+	public static void convertAndWrite(AFilesIn fi, AFilesOut fo, String formats, boolean sorted, int threads, GraphBuilder gb) throws Exception {
 		File input = fi == null ? null : fi.getInput();
 		File output = fo.isOutput() ? fo.getOutput() : new File(fi.getInput().getAbsolutePath() + ".xgmml");
-		log.info("Converting " + input + " to " + output + "\n");
+		Map<GraphWriter, File> writers = GraphWriters.getWriters(output, formats, threads);
+		String outputs = "";
+		for(File f : writers.values()) {
+			outputs = outputs + (outputs.equals("") ? "" : ", ") + f;
+		}
+		log.info("Converting " + input + " to " + outputs + "\n");
 		Graph g = gb.buildGraph(input);
-		PrintWriter po = new PrintWriter(output);
-		writer.write(g, po);
-		po.close();
+		GraphWriters.write(g, writers, sorted);
+	}
+	
+	/**
+	 * writes xgmml file while the network is created,
+	 * an incomplete output of a failed conversion is deleted
+	 * @param fi
+	 * @param fo
+	 * @param gs
+	 * @throws Exception
+	 */
+	public static void convertAndStream(AFilesIn fi, AFilesOut fo, GraphStreamer gs) throws Exception {
+		convertAndStream(fi, fo, Utils.getOutputThreads(), gs);
+	}
+	
+	/**
+	 * @param threads threads that compress the output file
+	 */
+	public static void convertAndStream(AFilesIn fi, AFilesOut fo, int threads, GraphStreamer gs) throws Exception {
+		File input = fi == null ? null : fi.getInput();
+		File output = fo.isOutput() ? fo.getOutput() : new File(fi.getInput().getAbsolutePath() + ".xgmml");
+		log.info("Streaming " + input + " to " + output + "\n");
+		PrintWriter po = Utils.openWriter(output, threads);
+		boolean done = false;
+		try {
+			done = gs.streamGraph(input, po);
+		} finally {
+			po.close();
+			if(!done) {
+				output.delete();
+				log.warning("Conversion failed, the incomplete output " + output + " was deleted.\n");
+			}
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package org.regin.creator.utils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * IDMapper that maps identifiers in the background before they are
+ * needed. Lookups that were requested with {@link #prefetch} wait for
+ * the background result, all other lookups are passed on to the
+ * underlying mapper. The underlying mapper has to be thread-safe,
+ * e.g. an {@link IDMapperPool}. A prefetched identifier is forgotten
+ * once the result of every requested target system code was taken.
+ * @author Thomas
+ *
+ */
+public class AsyncIDMapper implements IDMapper {
+
+	private IDMapper mapper;
+	private ExecutorService executor;
+	private Map<Xref, Request> requested;
+
+	/**
+	 * background lookup and the target data sources
+	 * that were not taken yet
+	 */
+	private static class Request {
+		Future<Map<DataSource, Set<Xref>>> result;
+		Set<DataSource> remaining = new HashSet<DataSource>();
+	}
+
+	public AsyncIDMapper(IDMapper mapper, int threads) {
+		this.mapper = mapper;
+		executor = Executors.newFixedThreadPool(threads);
+		requested = new ConcurrentHashMap<Xref, Request>();
+	}
+
+	/**
+	 * the mapper that the requests are sent to
+	 */
+	public IDMapper getMapper() {
+		return mapper;
+	}
+
+	/**
+	 * starts mapping the identifier to all target system codes,
+	 * identifiers that were already requested are ignored
+	 */
+	public void prefetch(String id, String syscodeIn, final Collection<String> syscodesOut) {
+		final Xref xref = new Xref(id, DataSource.getBySystemCode(syscodeIn));
+		if(!requested.containsKey(xref)) {
+			Request request = new Request();
+			for(String syscode : syscodesOut) {
+				request.remaining.add(DataSource.getBySystemCode(syscode));
+			}
+			request.result = executor.submit(new Callable<Map<DataSource, Set<Xref>>>() {
+				public Map<DataSource, Set<Xref>> call() throws Exception {
+					Map<DataSource, Set<Xref>> result = new HashMap<DataSource, Set<Xref>>();
+					for(String syscode : syscodesOut) {
+						DataSource ds = DataSource.getBySystemCode(syscode);
+						result.put(ds, mapper.mapID(xref, ds));
+					}
+					return result;
+				}
+			});
+			requested.put(xref, request);
+		}
+	}
+
+	public Set<Xref> mapID(Xref ref, DataSource... tgtDataSources) throws IDMapperException {
+		Request request = tgtDataSources.length == 1 ? requested.get(ref) : null;
+		if(request != null) {
+			synchronized(request) {
+				if(request.remaining.remove(tgtDataSources[0]) && request.remaining.isEmpty()) {
+					requested.remove(ref);
+				}
+			}
+			Map<DataSource, Set<Xref>> result;
+			try {
+				result = request.result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IDMapperException(e);
+			} catch (ExecutionException e) {
+				throw new IDMapperException(e.getCause());
+			}
+			if(result.containsKey(tgtDataSources[0])) {
+				return new HashSet<Xref>(result.get(tgtDataSources[0]));
+			}
+		}
+		return mapper.mapID(ref, tgtDataSources);
+	}
+
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs, DataSource... tgtDataSources) throws IDMapperException {
+		return mapper.mapID(srcXrefs, tgtDataSources);
+	}
+
+	public boolean xrefExists(Xref xref) throws IDMapperException {
+		return mapper.xrefExists(xref);
+	}
+
+	public Set<Xref> freeSearch(String text, int limit) throws IDMapperException {
+		return mapper.freeSearch(text, limit);
+	}
+
+	public IDMapperCapabilities getCapabilities() {
+		return mapper.getCapabilities();
+	}
+
+	public void close() throws IDMapperException {
+		executor.shutdownNow();
+		requested.clear();
+		mapper.close();
+	}
+
+	public boolean isConnected() {
+		return mapper.isConnected();
+	}
+}
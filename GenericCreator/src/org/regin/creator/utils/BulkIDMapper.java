@@ -0,0 +1,215 @@
+package org.regin.creator.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+import org.bridgedb.rdb.SimpleGdb;
+
+/**
+ * IDMapper that resolves a known set of identifiers up front. If the
+ * underlying mapper is a single BridgeDb database connection (schema 3)
+ * a batch of identifiers is mapped with one SQL query per target system
+ * code (idRight IN (...)). For all other mappers (cache, connection pool)
+ * the collection based mapID method is used, which BridgeDb answers with
+ * one query per identifier. Lookups of prefetched identifiers are answered 
+ * from memory, all other lookups are passed on to the underlying mapper.
+ * @author Thomas
+ *
+ */
+public class BulkIDMapper implements IDMapper {
+	private final static Logger log = Logger.getLogger(BulkIDMapper.class.getName());
+	private final static int BATCH_SIZE = 1000;
+	private final static String QUERY = "SELECT src.idRight, dest.idRight, dest.codeRight FROM link AS src JOIN link AS dest " + 
+			"ON src.idLeft = dest.idLeft AND src.codeLeft = dest.codeLeft WHERE src.codeRight = ? AND dest.codeRight = ? AND src.idRight IN (";
+
+	private IDMapper mapper;
+	private Map<Xref, Map<DataSource, Set<Xref>>> mapped;
+	private Connection connection;
+	private PreparedStatement batchQuery;
+
+	public BulkIDMapper(IDMapper mapper) {
+		this.mapper = mapper;
+		mapped = new HashMap<Xref, Map<DataSource, Set<Xref>>>();
+	}
+
+	/**
+	 * maps all identifiers to all target system codes in batches
+	 * of BATCH_SIZE identifiers, one query per batch and target
+	 * if the database is queried directly (see class comment)
+	 */
+	public void prefetch(Collection<String> ids, String syscodeIn, Collection<String> syscodesOut) throws IDMapperException {
+		connection = getConnection();
+		DataSource in = DataSource.getBySystemCode(syscodeIn);
+		List<Xref> batch = new ArrayList<Xref>();
+		int count = 0;
+		// sorted identifiers are close to each other in the index and
+		// the table, a batch reads fewer pages of the database file
+		List<String> sorted = new ArrayList<String>(ids);
+		Collections.sort(sorted);
+		for(String id : sorted) {
+			batch.add(new Xref(id, in));
+			if(batch.size() == BATCH_SIZE) {
+				prefetch(batch, syscodesOut);
+				count += batch.size();
+				batch.clear();
+			}
+		}
+		if(!batch.isEmpty()) {
+			prefetch(batch, syscodesOut);
+			count += batch.size();
+		}
+		log.info(count + " " + syscodeIn + " identifiers mapped to " + syscodesOut + 
+				(connection == null ? " with one query per identifier" : " with one query per batch") + ".\n");
+	}
+
+	/**
+	 * connection of a single schema 3 database, null for other mappers
+	 */
+	private Connection getConnection() {
+		if(!(mapper instanceof SimpleGdb)) return null;
+		try {
+			Connection con = ((SimpleGdb) mapper).getConnection();
+			Statement st = con.createStatement();
+			try {
+				ResultSet rs = st.executeQuery("SELECT schemaversion FROM info");
+				return rs.next() && rs.getInt(1) == 3 ? con : null;
+			} finally {
+				st.close();
+			}
+		} catch (SQLException e) {
+			log.warning("Could not query the database directly, identifiers are mapped one by one: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void prefetch(List<Xref> batch, Collection<String> syscodesOut) throws IDMapperException {
+		for(String syscode : syscodesOut) {
+			DataSource out = DataSource.getBySystemCode(syscode);
+			Map<Xref, Set<Xref>> result = connection == null ? mapper.mapID(batch, out) : query(batch, syscode);
+			for(Xref x : batch) {
+				Map<DataSource, Set<Xref>> map = mapped.get(x);
+				if(map == null) {
+					map = new HashMap<DataSource, Set<Xref>>();
+					mapped.put(x, map);
+				}
+				Set<Xref> xrefs = result.get(x);
+				map.put(out, xrefs == null ? new HashSet<Xref>() : xrefs);
+			}
+		}
+	}
+
+	/**
+	 * maps the batch with one query, same result as mapID of 
+	 * the database for every identifier with one target system code
+	 */
+	private Map<Xref, Set<Xref>> query(List<Xref> batch, String syscodeOut) throws IDMapperException {
+		Map<String, Xref> byId = new HashMap<String, Xref>();
+		for(Xref x : batch) {
+			byId.put(x.getId(), x);
+		}
+		Map<Xref, Set<Xref>> result = new HashMap<Xref, Set<Xref>>();
+		try {
+			PreparedStatement st;
+			if(batch.size() == BATCH_SIZE) {
+				if(batchQuery == null) {
+					batchQuery = connection.prepareStatement(query(BATCH_SIZE));
+				}
+				st = batchQuery;
+			} else {
+				st = connection.prepareStatement(query(batch.size()));
+			}
+			try {
+				st.setString(1, batch.get(0).getDataSource().getSystemCode());
+				st.setString(2, syscodeOut);
+				for(int i = 0; i < batch.size(); i++) {
+					st.setString(i + 3, batch.get(i).getId());
+				}
+				ResultSet rs = st.executeQuery();
+				while(rs.next()) {
+					Xref src = byId.get(rs.getString(1));
+					Set<Xref> xrefs = result.get(src);
+					if(xrefs == null) {
+						xrefs = new HashSet<Xref>();
+						result.put(src, xrefs);
+					}
+					xrefs.add(new Xref(rs.getString(2), DataSource.getBySystemCode(rs.getString(3))));
+				}
+				rs.close();
+			} finally {
+				if(st != batchQuery) st.close();
+			}
+		} catch (SQLException e) {
+			throw new IDMapperException(e);
+		}
+		return result;
+	}
+
+	private static String query(int size) {
+		StringBuilder sql = new StringBuilder(QUERY);
+		for(int i = 0; i < size; i++) {
+			sql.append(i == 0 ? "?" : ", ?");
+		}
+		return sql.append(")").toString();
+	}
+
+	public Set<Xref> mapID(Xref ref, DataSource... tgtDataSources) throws IDMapperException {
+		if(tgtDataSources.length == 1) {
+			Map<DataSource, Set<Xref>> map = mapped.get(ref);
+			if(map != null && map.containsKey(tgtDataSources[0])) {
+				return new HashSet<Xref>(map.get(tgtDataSources[0]));
+			}
+		}
+		return mapper.mapID(ref, tgtDataSources);
+	}
+
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs, DataSource... tgtDataSources) throws IDMapperException {
+		return mapper.mapID(srcXrefs, tgtDataSources);
+	}
+
+	public boolean xrefExists(Xref xref) throws IDMapperException {
+		return mapper.xrefExists(xref);
+	}
+
+	public Set<Xref> freeSearch(String text, int limit) throws IDMapperException {
+		return mapper.freeSearch(text, limit);
+	}
+
+	public IDMapperCapabilities getCapabilities() {
+		return mapper.getCapabilities();
+	}
+
+	public void close() throws IDMapperException {
+		mapped.clear();
+		if(batchQuery != null) {
+			try {
+				batchQuery.close();
+			} catch (SQLException e) {
+				// the connection is closed with the mapper
+			}
+			batchQuery = null;
+		}
+		connection = null;
+		mapper.close();
+	}
+
+	public boolean isConnected() {
+		return mapper.isConnected();
+	}
+}
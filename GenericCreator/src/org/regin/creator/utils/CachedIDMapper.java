@@ -0,0 +1,247 @@
+package org.regin.creator.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * IDMapper that keeps the results of a BridgeDb database in a
+ * persistent cache file. The cache file is named after the checksum
+ * of the BridgeDb file, so a new database release never uses old
+ * results. Identifiers that could not be mapped are stored as well.
+ * The BridgeDb database is only opened if a lookup is not in the cache.
+ *
+ * Only lookups with exactly one target data source are cached, all
+ * other calls are passed on to the database.
+ * @author Thomas
+ *
+ */
+public class CachedIDMapper implements IDMapper {
+	private final static Logger log = Logger.getLogger(CachedIDMapper.class.getName());
+
+	private File bridgeDb;
+	private int connections;
+	private File cacheFile;
+	private IDMapper mapper;
+
+	private Map<String, Set<String>> cache;
+	private List<String> added;
+	private AtomicInteger hits = new AtomicInteger();
+	private AtomicInteger misses = new AtomicInteger();
+
+	public CachedIDMapper(File bridgeDb, File cacheDir) throws IOException {
+		this(bridgeDb, cacheDir, 1);
+	}
+
+	/**
+	 * uses an already opened mapper for cache misses
+	 */
+	public CachedIDMapper(File bridgeDb, File cacheDir, IDMapper mapper) throws IOException {
+		this(bridgeDb, cacheDir, 1);
+		this.mapper = mapper;
+	}
+
+	/**
+	 * @param connections number of database connections 
+	 * that are opened on the first cache miss
+	 */
+	public CachedIDMapper(File bridgeDb, File cacheDir, int connections) throws IOException {
+		this.bridgeDb = bridgeDb;
+		this.connections = connections;
+		cacheDir.mkdirs();
+		cacheFile = new File(cacheDir, Utils.checksum(bridgeDb) + ".cache");
+		cache = new ConcurrentHashMap<String, Set<String>>();
+		added = new ArrayList<String>();
+		readCache();
+	}
+
+	/**
+	 * cache file: one lookup per line,
+	 * identifier, syscode in, syscode out and the mapped identifiers
+	 * separated by tabs
+	 */
+	private void readCache() throws IOException {
+		if(cacheFile.exists()) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+			String line;
+			while((line = reader.readLine()) != null) {
+				String [] split = line.split("\t");
+				if(split.length >= 3) {
+					Set<String> ids = new HashSet<String>();
+					for(int i = 3; i < split.length; i++) {
+						ids.add(split[i]);
+					}
+					cache.put(split[0] + "\t" + split[1] + "\t" + split[2], ids);
+				}
+			}
+			reader.close();
+			log.info(cache.size() + " cached mappings read from " + cacheFile.getName() + " for " + bridgeDb.getName() + ".\n");
+		}
+	}
+
+	private synchronized void writeCache() throws IOException {
+		if(!added.isEmpty()) {
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cacheFile, true), "UTF-8"));
+			for(String key : added) {
+				writer.write(key);
+				for(String id : cache.get(key)) {
+					writer.write("\t" + id);
+				}
+				writer.write("\n");
+			}
+			writer.close();
+			added.clear();
+		}
+	}
+
+	private synchronized IDMapper getMapper() throws IDMapperException {
+		if(mapper == null) {
+			mapper = Utils.connectIDMapper(bridgeDb, connections);
+		}
+		return mapper;
+	}
+
+	private String getKey(Xref xref, DataSource tgt) {
+		return xref.getId() + "\t" + xref.getDataSource().getSystemCode() + "\t" + tgt.getSystemCode();
+	}
+
+	private synchronized void store(String key, Set<String> ids) {
+		cache.put(key, ids);
+		added.add(key);
+	}
+
+	private Set<Xref> toXrefs(Set<String> ids, DataSource tgt) {
+		Set<Xref> result = new HashSet<Xref>();
+		for(String id : ids) {
+			result.add(new Xref(id, tgt));
+		}
+		return result;
+	}
+
+	private boolean isCacheable(Xref xref, DataSource... tgtDataSources) {
+		return tgtDataSources.length == 1 && tgtDataSources[0] != null && xref.getDataSource() != null;
+	}
+
+	public Set<Xref> mapID(Xref ref, DataSource... tgtDataSources) throws IDMapperException {
+		if(!isCacheable(ref, tgtDataSources)) {
+			return getMapper().mapID(ref, tgtDataSources);
+		}
+		String key = getKey(ref, tgtDataSources[0]);
+		Set<String> ids = cache.get(key);
+		if(ids != null) {
+			hits.incrementAndGet();
+			return toXrefs(ids, tgtDataSources[0]);
+		}
+		misses.incrementAndGet();
+		Set<Xref> result = getMapper().mapID(ref, tgtDataSources);
+		ids = new HashSet<String>();
+		for(Xref x : result) {
+			ids.add(x.getId());
+		}
+		store(key, ids);
+		return result;
+	}
+
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs, DataSource... tgtDataSources) throws IDMapperException {
+		Map<Xref, Set<Xref>> result = new HashMap<Xref, Set<Xref>>();
+		List<Xref> query = new ArrayList<Xref>();
+		for(Xref x : srcXrefs) {
+			if(!isCacheable(x, tgtDataSources)) {
+				query.add(x);
+				continue;
+			}
+			Set<String> ids = cache.get(getKey(x, tgtDataSources[0]));
+			if(ids != null) {
+				hits.incrementAndGet();
+				result.put(x, toXrefs(ids, tgtDataSources[0]));
+			} else {
+				misses.incrementAndGet();
+				query.add(x);
+			}
+		}
+		if(!query.isEmpty()) {
+			Map<Xref, Set<Xref>> mapped = getMapper().mapID(query, tgtDataSources);
+			for(Xref x : query) {
+				Set<Xref> xrefs = mapped.get(x);
+				if(xrefs == null) {
+					xrefs = new HashSet<Xref>();
+				}
+				if(isCacheable(x, tgtDataSources)) {
+					Set<String> ids = new HashSet<String>();
+					for(Xref m : xrefs) {
+						ids.add(m.getId());
+					}
+					store(getKey(x, tgtDataSources[0]), ids);
+				}
+				result.put(x, xrefs);
+			}
+		}
+		return result;
+	}
+
+	public boolean xrefExists(Xref xref) throws IDMapperException {
+		return getMapper().xrefExists(xref);
+	}
+
+	public Set<Xref> freeSearch(String text, int limit) throws IDMapperException {
+		return getMapper().freeSearch(text, limit);
+	}
+
+	public IDMapperCapabilities getCapabilities() {
+		try {
+			return getMapper().getCapabilities();
+		} catch (IDMapperException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * writes new results to the cache file and closes
+	 * the database connection if it was opened
+	 */
+	public void close() throws IDMapperException {
+		try {
+			writeCache();
+		} catch (IOException e) {
+			log.warning("Could not write mapping cache " + cacheFile.getAbsolutePath() + ": " + e.getMessage());
+		}
+		log.info("mapping cache for " + bridgeDb.getName() + ": " + hits + " hits, " + misses + " misses.\n");
+		if(mapper != null) {
+			mapper.close();
+			mapper = null;
+		}
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	public boolean isConnected() {
+		return true;
+	}
+}
@@ -0,0 +1,181 @@
+package org.regin.creator.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a tab-delimited file with several threads. The file is split
+ * into line-aligned byte ranges and every range is decoded and split
+ * into rows by its own worker. The rows are handed to the
+ * {@link RowHandler} on the calling thread in the same order as in the
+ * file, so the result is the same as reading the file line by line.
+ * The first line (header) is skipped.
+ * Compressed files can not be split into byte ranges, they are
+ * decompressed on the calling thread and batches of lines are
+ * parsed by the workers.
+ * @author Thomas
+ *
+ */
+public class ChunkedFileReader {
+
+	private final static int CHUNK_SIZE = 8 * 1024 * 1024;
+	private final static int LINES_PER_BATCH = 10000;
+
+	public interface LineParser {
+		/**
+		 * called from the worker threads, has to be thread-safe
+		 */
+		public String [] parse(String line);
+	}
+
+	public interface RowHandler {
+		public void handleRow(String [] row, int lineNumber) throws Exception;
+	}
+
+	private File file;
+	private int threads;
+	private Charset charset;
+
+	public ChunkedFileReader(File file, int threads) {
+		this.file = file;
+		this.threads = threads;
+		// same charset as the FileReader used for the sequential path
+		this.charset = Charset.defaultCharset();
+	}
+
+	public void read(final LineParser parser, RowHandler handler) throws Exception {
+		if(Utils.isCompressed(file)) {
+			readCompressed(parser, handler);
+			return;
+		}
+		long length = file.length();
+		int chunks = (int) Math.max(threads, (length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		long chunkSize = Math.max(1, (length + chunks - 1) / chunks);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// only a limited number of chunks is parsed ahead of the handler
+			LinkedList<Future<List<String[]>>> queue = new LinkedList<Future<List<String[]>>>();
+			int lineNumber = 2;
+			long start = 0;
+			while(start < length || !queue.isEmpty()) {
+				while(start < length && queue.size() < threads * 2) {
+					final long from = start;
+					final long to = Math.min(length, start + chunkSize);
+					queue.add(executor.submit(new Callable<List<String[]>>() {
+						public List<String[]> call() throws Exception {
+							return readChunk(from, to, parser);
+						}
+					}));
+					start = to;
+				}
+				List<String[]> rows = queue.removeFirst().get();
+				for(String [] row : rows) {
+					handler.handleRow(row, lineNumber);
+					lineNumber++;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void readCompressed(final LineParser parser, RowHandler handler) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		BufferedReader reader = Utils.openReader(file);
+		try {
+			reader.readLine();
+			LinkedList<Future<List<String[]>>> queue = new LinkedList<Future<List<String[]>>>();
+			int lineNumber = 2;
+			boolean eof = false;
+			while(!eof || !queue.isEmpty()) {
+				while(!eof && queue.size() < threads * 2) {
+					final List<String> lines = new ArrayList<String>(LINES_PER_BATCH);
+					String line;
+					while(lines.size() < LINES_PER_BATCH && (line = reader.readLine()) != null) {
+						lines.add(line);
+					}
+					eof = lines.size() < LINES_PER_BATCH;
+					queue.add(executor.submit(new Callable<List<String[]>>() {
+						public List<String[]> call() throws Exception {
+							List<String[]> rows = new ArrayList<String[]>(lines.size());
+							for(String l : lines) {
+								rows.add(parser.parse(l));
+							}
+							return rows;
+						}
+					}));
+				}
+				List<String[]> rows = queue.removeFirst().get();
+				for(String [] row : rows) {
+					handler.handleRow(row, lineNumber);
+					lineNumber++;
+				}
+			}
+		} finally {
+			reader.close();
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * reads all lines that start in the byte range [start, end)
+	 */
+	private List<String[]> readChunk(long start, long end, LineParser parser) throws IOException {
+		List<String[]> rows = new ArrayList<String[]>();
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			// start one byte early: everything up to the first line break belongs
+			// to the previous chunk (or is the header for the first chunk)
+			long pos = start == 0 ? 0 : start - 1;
+			FileChannel channel = fis.getChannel();
+			channel.position(pos);
+			InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 65536);
+
+			byte [] line = new byte[1024];
+			int b;
+			while((b = in.read()) != -1) {
+				pos++;
+				if(b == '\n') break;
+			}
+			while(pos < end) {
+				int len = 0;
+				boolean eof = true;
+				while((b = in.read()) != -1) {
+					pos++;
+					if(b == '\n') {
+						eof = false;
+						break;
+					}
+					if(len == line.length) {
+						byte [] tmp = new byte[line.length * 2];
+						System.arraycopy(line, 0, tmp, 0, len);
+						line = tmp;
+					}
+					line[len++] = (byte) b;
+				}
+				if(eof && len == 0) break;
+				if(len > 0 && line[len - 1] == '\r') len--;
+				rows.add(parser.parse(new String(line, 0, len, charset)));
+				if(eof) break;
+			}
+		} finally {
+			fis.close();
+		}
+		return rows;
+	}
+}
@@ -155,6 +155,22 @@ public class ConfigAttributes {
 		}
 	}
 
+	/**
+	 * all columns of the input file that are used in the network
+	 */
+	public Set<Integer> getColumns() {
+		Set<Integer> columns = new HashSet<Integer>();
+		columns.addAll(sourceColumns);
+		columns.addAll(targetColumns);
+		columns.addAll(edgeColumns);
+		columns.add(sourceIdColumn);
+		columns.add(sourceLabelColumn);
+		columns.add(targetIdColumn);
+		columns.add(targetLabelColumn);
+		columns.remove(null);
+		return columns;
+	}
+
 	public Integer getSourceIdColumn() {
 		return sourceIdColumn;
 	}
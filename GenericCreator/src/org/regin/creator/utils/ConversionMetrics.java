@@ -0,0 +1,242 @@
+package org.regin.creator.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Timings and counters of one conversion that are written as a JSON
+ * report next to the log file (input + ".metrics.json").
+ *
+ * Phases are timed with start/stop and reported in the order in which
+ * they first ran. The time spent in BridgeDb lookups on the converting
+ * thread is reported as the phase "mapping" and taken out of "parse".
+ * Warnings are counted by category (see {@link Diagnostics}).
+ * Mapper latencies are counted in power of two buckets (microseconds).
+ * Peak heap is the peak of the whole JVM, GC time and count are the 
+ * differences since the metrics were created.
+ *
+ * Not thread-safe, all calls come from the converting thread.
+ * @author Thomas
+ *
+ */
+public class ConversionMetrics {
+
+	public final static String PARSE = "parse";
+	public final static String MAPPING = "mapping";
+	private final static int BUCKETS = 24;
+
+	private long created;
+	private long gcTime;
+	private long gcCount;
+
+	private Map<String, Long> phases = new LinkedHashMap<String, Long>();
+	private String phase;
+	private long phaseStart;
+
+	private String network = "";
+	private String input = "";
+	private String output = "";
+	private List<String> databases = new ArrayList<String>();
+	private long rows;
+	private int edges;
+	private int sourceNodes;
+	private int targetNodes;
+
+	private long mapperCalls;
+	private long mapperTime;
+	private long [] latencies = new long[BUCKETS];
+	private long cacheHits;
+	private long cacheMisses;
+	private long indexHits;
+	private long indexMisses;
+	private Map<String, Long> warnings = new LinkedHashMap<String, Long>();
+
+	public ConversionMetrics() {
+		created = System.currentTimeMillis();
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcTime += Math.max(0, gc.getCollectionTime());
+			gcCount += Math.max(0, gc.getCollectionCount());
+		}
+	}
+
+	/**
+	 * starts a phase, a running phase is stopped
+	 */
+	public void start(String name) {
+		stop();
+		phase = name;
+		phaseStart = System.nanoTime();
+	}
+
+	public void stop() {
+		if(phase != null) {
+			add(phase, System.nanoTime() - phaseStart);
+			phase = null;
+		}
+	}
+
+	private void add(String name, long nanos) {
+		Long time = phases.get(name);
+		phases.put(name, (time == null ? 0 : time) + nanos);
+	}
+
+	public void mapperCall(long nanos) {
+		mapperCalls++;
+		mapperTime += nanos;
+		int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+		latencies[Math.min(bucket, BUCKETS - 1)]++;
+	}
+
+	public void addRow() {
+		rows++;
+	}
+
+	public void addCache(long hits, long misses) {
+		cacheHits += hits;
+		cacheMisses += misses;
+	}
+
+	/**
+	 * mappings taken from and missing in the index of the previous build
+	 */
+	public void addIndex(long hits, long misses) {
+		indexHits += hits;
+		indexMisses += misses;
+	}
+
+	public void addWarnings(String category, long count) {
+		Long n = warnings.get(category);
+		warnings.put(category, (n == null ? 0 : n) + count);
+	}
+
+	public void addDatabase(File bridgeDb) {
+		if(bridgeDb != null && !databases.contains(bridgeDb.getAbsolutePath())) {
+			databases.add(bridgeDb.getAbsolutePath());
+		}
+	}
+
+	public void setNetwork(String network, File input) {
+		this.network = this.network.equals("") ? network : this.network + "; " + network;
+		this.input = this.input.equals("") ? input.getPath() : this.input + "; " + input.getPath();
+	}
+
+	public void setOutput(File output) {
+		this.output = output.getPath();
+	}
+
+	public void setCounts(int edges, int sourceNodes, int targetNodes) {
+		this.edges = edges;
+		this.sourceNodes = sourceNodes;
+		this.targetNodes = targetNodes;
+	}
+
+	public void write(File file) throws IOException {
+		stop();
+		long gcTimeEnd = 0;
+		long gcCountEnd = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcTimeEnd += Math.max(0, gc.getCollectionTime());
+			gcCountEnd += Math.max(0, gc.getCollectionCount());
+		}
+		long peakHeap = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		Long parse = phases.get(PARSE);
+		if(parse != null) {
+			phases.put(PARSE, Math.max(0, parse - mapperTime));
+		}
+		phases.put(MAPPING, mapperTime);
+		long total = 0;
+		for(long time : phases.values()) {
+			total += time;
+		}
+		// rows are parsed and mapped in the parse phase
+		long rowTime = parse == null ? 0 : parse;
+
+		SimpleDateFormat date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		date.setTimeZone(TimeZone.getTimeZone("UTC"));
+		PrintWriter out = new PrintWriter(file, "UTF-8");
+		out.println("{");
+		out.println("  \"network\": " + quote(network) + ",");
+		out.println("  \"input\": " + quote(input) + ",");
+		out.println("  \"output\": " + quote(output) + ",");
+		out.println("  \"started\": " + quote(date.format(new Date(created))) + ",");
+		out.println("  \"rows\": " + rows + ",");
+		out.println("  \"rowsPerSecond\": " + (rowTime > 0 ? Math.round(rows * 1e9 / rowTime) : 0) + ",");
+		out.println("  \"edges\": " + edges + ",");
+		out.println("  \"sourceNodes\": " + sourceNodes + ",");
+		out.println("  \"targetNodes\": " + targetNodes + ",");
+		out.println("  \"phasesMillis\": {");
+		for(Map.Entry<String, Long> e : phases.entrySet()) {
+			out.println("    " + quote(e.getKey()) + ": " + millis(e.getValue()) + ",");
+		}
+		out.println("    \"total\": " + millis(total));
+		out.println("  },");
+		out.println("  \"mapper\": {");
+		out.print("    \"databases\": [");
+		for(int i = 0; i < databases.size(); i++) {
+			out.print((i > 0 ? ", " : "") + quote(databases.get(i)));
+		}
+		out.println("],");
+		out.println("    \"calls\": " + mapperCalls + ",");
+		out.println("    \"meanMicros\": " + (mapperCalls > 0 ? mapperTime / mapperCalls / 1000 : 0) + ",");
+		out.println("    \"latencyMicros\": [");
+		int last = BUCKETS - 1;
+		while(last > 0 && latencies[last] == 0) last--;
+		for(int i = 0; i <= last; i++) {
+			String bound = i == BUCKETS - 1 ? "null" : "" + (1L << i);
+			out.println("      {\"below\": " + bound + ", \"count\": " + latencies[i] + "}" + (i < last ? "," : ""));
+		}
+		out.println("    ]");
+		out.println("  },");
+		out.println("  \"cache\": {\"hits\": " + cacheHits + ", \"misses\": " + cacheMisses + ", \"hitRate\": " + rate(cacheHits, cacheMisses) + "},");
+		out.println("  \"index\": {\"hits\": " + indexHits + ", \"misses\": " + indexMisses + ", \"hitRate\": " + rate(indexHits, indexMisses) + "},");
+		out.print("  \"warnings\": {");
+		int w = 0;
+		for(Map.Entry<String, Long> e : warnings.entrySet()) {
+			out.print((w++ > 0 ? ", " : "") + quote(e.getKey()) + ": " + e.getValue());
+		}
+		out.println("},");
+		out.println("  \"jvm\": {\"peakHeapBytes\": " + peakHeap + ", \"gcMillis\": " + (gcTimeEnd - gcTime) + ", \"gcCount\": " + (gcCountEnd - gcCount) + "}");
+		out.println("}");
+		out.close();
+	}
+
+	private static String millis(long nanos) {
+		return String.valueOf(Math.round(nanos / 1e4) / 100.0);
+	}
+
+	private static String rate(long hits, long misses) {
+		return hits + misses == 0 ? "null" : String.valueOf(Math.round(hits * 1e4 / (hits + misses)) / 1e4);
+	}
+
+	static String quote(String s) {
+		StringBuilder b = new StringBuilder("\"");
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\') {
+				b.append('\\').append(c);
+			} else if(c < 0x20) {
+				b.append(String.format("\\u%04x", (int) c));
+			} else {
+				b.append(c);
+			}
+		}
+		return b.append('"').toString();
+	}
+}
@@ -0,0 +1,272 @@
+package org.regin.creator.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Index of a conversion that is used to rebuild a network incrementally.
+ * It contains a 64 bit fingerprint of every input row (in file order, 
+ * only the columns used in the config), the size of the input file, 
+ * a stamp of the config and BridgeDb files and the id mapping results 
+ * of all nodes. The next build compares its rows with the index and 
+ * only maps identifiers that are not in the index.
+ * Strings are written with an int length and their UTF-8 bytes, 
+ * so they are not limited to the 64 KB of writeUTF.
+ * @author Thomas
+ *
+ */
+public class DeltaIndex {
+	private final static int VERSION = 2;
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	private String stamp;
+	private long inputLength;
+	private long [] fingerprints;
+	private int rowCount;
+	private Map<String, Mapping> mappings;
+
+	/**
+	 * id mapping results of one node
+	 */
+	public static class Mapping {
+		/** mapped identifiers as appended to the identifiers attribute */
+		public String identifiers = "";
+		/** identifiers that are registered as aliases of the node */
+		public List<String> aliases = new ArrayList<String>();
+		/** MIMAT identifiers of a microRNA node, null for other nodes */
+		public List<String> mimats;
+	}
+
+	/**
+	 * empty index of a new build, the rows are added 
+	 * while the input file is converted
+	 */
+	public DeltaIndex(String stamp, File input) {
+		this(stamp, input.length(), new long[1024]);
+	}
+
+	private DeltaIndex(String stamp, long inputLength, long [] fingerprints) {
+		this.stamp = stamp;
+		this.inputLength = inputLength;
+		this.fingerprints = fingerprints;
+		mappings = new HashMap<String, Mapping>();
+	}
+
+	/**
+	 * the index has to be rebuilt if the config or
+	 * one of the BridgeDb files changed
+	 */
+	public static String stamp(File config, File... bridgeDbs) throws IOException {
+		StringBuilder stamp = new StringBuilder(Utils.checksum(config));
+		for(File db : bridgeDbs) {
+			if(db != null) {
+				stamp.append("|" + db.getAbsolutePath() + ":" + db.length() + ":" + db.lastModified());
+			}
+		}
+		return stamp.toString();
+	}
+
+	/**
+	 * adds the fingerprint of the next row of the input file, 
+	 * rows have to be added in file order
+	 */
+	public void addRow(String [] row) {
+		if(rowCount == fingerprints.length) {
+			fingerprints = Arrays.copyOf(fingerprints, rowCount * 2);
+		}
+		fingerprints[rowCount++] = hash(row);
+	}
+
+	/**
+	 * fields of unused columns are null and only end the field
+	 */
+	private static long hash(String [] row) {
+		// FNV-1a
+		long h = 0xcbf29ce484222325L;
+		for(String field : row) {
+			if(field != null) {
+				for(int i = 0; i < field.length(); i++) {
+					h ^= field.charAt(i);
+					h *= 0x100000001b3L;
+				}
+			}
+			h ^= '\t';
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	public boolean isCompatible(DeltaIndex previous) {
+		return stamp.equals(previous.stamp);
+	}
+
+	/**
+	 * compares the rows of the input file with this index, reading 
+	 * stops at the first row that differs. A file of another size is 
+	 * not read at all.
+	 * @param columns columns used in the config, as in the conversion
+	 */
+	public boolean hasSameRows(File input, Collection<Integer> columns) throws IOException {
+		if(input.length() != inputLength) return false;
+		TabTokenizer tokenizer = new TabTokenizer(columns);
+		BufferedReader reader = Utils.openReader(input);
+		try {
+			reader.readLine();
+			int count = 0;
+			String line;
+			while((line = reader.readLine()) != null) {
+				if(count == rowCount || fingerprints[count++] != hash(tokenizer.tokenize(line))) {
+					return false;
+				}
+			}
+			return count == rowCount;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @return number of added and removed rows compared to the previous index
+	 */
+	public int [] diff(DeltaIndex previous) {
+		long [] current = Arrays.copyOf(fingerprints, rowCount);
+		long [] old = Arrays.copyOf(previous.fingerprints, previous.rowCount);
+		Arrays.sort(current);
+		Arrays.sort(old);
+		int added = 0;
+		int removed = 0;
+		int i = 0;
+		int j = 0;
+		while(i < current.length || j < old.length) {
+			if(j == old.length || (i < current.length && current[i] < old[j])) {
+				added++;
+				i++;
+			} else if(i == current.length || old[j] < current[i]) {
+				removed++;
+				j++;
+			} else {
+				i++;
+				j++;
+			}
+		}
+		return new int [] {added, removed};
+	}
+
+	public Mapping getMapping(String syscode, String id) {
+		return mappings.get(syscode + "\t" + id);
+	}
+
+	public void putMapping(String syscode, String id, Mapping mapping) {
+		mappings.put(syscode + "\t" + id, mapping);
+	}
+
+	public int getMappingCount() {
+		return mappings.size();
+	}
+
+	/**
+	 * @return the index or null if the file does not exist or can not be read
+	 */
+	public static DeltaIndex read(File file) {
+		if(!file.exists()) return null;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 65536)));
+			try {
+				if(in.readInt() != VERSION) return null;
+				String stamp = readString(in);
+				long inputLength = in.readLong();
+				long [] fingerprints = new long[in.readInt()];
+				for(int i = 0; i < fingerprints.length; i++) {
+					fingerprints[i] = in.readLong();
+				}
+				DeltaIndex index = new DeltaIndex(stamp, inputLength, fingerprints);
+				index.rowCount = fingerprints.length;
+				int count = in.readInt();
+				for(int i = 0; i < count; i++) {
+					String key = readString(in);
+					Mapping mapping = new Mapping();
+					mapping.identifiers = readString(in);
+					mapping.aliases = readList(in);
+					if(in.readBoolean()) {
+						mapping.mimats = readList(in);
+					}
+					index.mappings.put(key, mapping);
+				}
+				return index;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	public void write(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file), 65536)));
+		try {
+			out.writeInt(VERSION);
+			writeString(out, stamp);
+			out.writeLong(inputLength);
+			out.writeInt(rowCount);
+			for(int i = 0; i < rowCount; i++) {
+				out.writeLong(fingerprints[i]);
+			}
+			out.writeInt(mappings.size());
+			for(Map.Entry<String, Mapping> e : mappings.entrySet()) {
+				writeString(out, e.getKey());
+				writeString(out, e.getValue().identifiers);
+				writeList(out, e.getValue().aliases);
+				out.writeBoolean(e.getValue().mimats != null);
+				if(e.getValue().mimats != null) {
+					writeList(out, e.getValue().mimats);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static List<String> readList(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		List<String> list = new ArrayList<String>(size);
+		for(int i = 0; i < size; i++) {
+			list.add(readString(in));
+		}
+		return list;
+	}
+
+	private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+		out.writeInt(list.size());
+		for(String s : list) {
+			writeString(out, s);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte [] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte [] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,175 @@
+package org.regin.creator.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Warnings and traces of one conversion that are written to the log
+ * on a background thread. Warnings are counted by category, only the
+ * first samples of a category are logged one by one, after that a
+ * category is reported at most every 10 seconds with its count.
+ * A summary of all categories is logged on {@link #close()}.
+ *
+ * Per-node traces are only recorded if tracing is enabled, they are
+ * logged with level FINE (log file only). Warnings are dropped if the
+ * queue is full, they are still counted.
+ * @author Thomas
+ *
+ */
+public class Diagnostics {
+	private final static int SAMPLES = 10;
+	private final static int QUEUE_SIZE = 65536;
+	private final static long REPORT_INTERVAL = 10000;
+	private final static LogRecord END = new LogRecord(Level.OFF, "");
+
+	private Logger log;
+	private boolean tracing;
+	private Map<String, AtomicLong> counts = new ConcurrentHashMap<String, AtomicLong>();
+	private Map<String, Long> reported = new ConcurrentHashMap<String, Long>();
+	private BlockingQueue<LogRecord> queue = new ArrayBlockingQueue<LogRecord>(QUEUE_SIZE);
+	private Thread writer;
+
+	public Diagnostics(Logger log, boolean tracing) {
+		this.log = log;
+		this.tracing = tracing;
+	}
+
+	public boolean isTracing() {
+		return tracing;
+	}
+
+	/**
+	 * counts the warning, the message is only formatted and
+	 * logged for the first samples of the category
+	 * @param format message format of {@link String#format}
+	 */
+	public void warn(String category, String format, Object... args) {
+		AtomicLong count = counts.get(category);
+		if(count == null) {
+			synchronized(counts) {
+				count = counts.get(category);
+				if(count == null) {
+					count = new AtomicLong();
+					counts.put(category, count);
+				}
+			}
+		}
+		long n = count.incrementAndGet();
+		if(n <= SAMPLES) {
+			String message = String.format(Locale.ROOT, format, args);
+			offer(new LogRecord(Level.WARNING, category + ": " + message + (n == SAMPLES ? " (further warnings of this category are counted)" : "") + "\n"));
+		}
+	}
+
+	/**
+	 * logs the message if tracing is enabled,
+	 * waits if the queue is full
+	 */
+	public void trace(String message) {
+		if(!tracing) return;
+		start();
+		try {
+			queue.put(new LogRecord(Level.FINE, message));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void offer(LogRecord record) {
+		start();
+		queue.offer(record);
+	}
+
+	private synchronized void start() {
+		if(writer != null) return;
+		writer = new Thread(new Runnable() {
+			public void run() {
+				write();
+			}
+		}, "diagnostics");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private void write() {
+		long last = System.currentTimeMillis();
+		try {
+			while(true) {
+				LogRecord record = queue.poll(REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+				if(record == END) return;
+				if(record != null) {
+					publish(record);
+				}
+				if(System.currentTimeMillis() - last >= REPORT_INTERVAL) {
+					report(false);
+					last = System.currentTimeMillis();
+				}
+			}
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+	private void publish(LogRecord record) {
+		record.setLoggerName(log.getName());
+		// the source is not the thread that logs the record
+		record.setSourceClassName(log.getName());
+		record.setSourceMethodName(null);
+		log.log(record);
+	}
+
+	/**
+	 * logs the categories with more warnings than samples
+	 * that changed since the last report
+	 */
+	private void report(boolean summary) {
+		for(Map.Entry<String, AtomicLong> e : counts.entrySet()) {
+			long n = e.getValue().get();
+			Long last = reported.get(e.getKey());
+			if(n > SAMPLES && (last == null || last != n || summary)) {
+				reported.put(e.getKey(), n);
+				publish(new LogRecord(Level.WARNING, e.getKey() + ": " + n + (summary ? " in total" : " so far") + "\n"));
+			}
+		}
+	}
+
+	/**
+	 * writes the queued messages and the summary
+	 */
+	public void close() {
+		synchronized(this) {
+			if(writer != null) {
+				try {
+					queue.put(END);
+					writer.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				writer = null;
+			}
+		}
+		report(true);
+	}
+
+	/**
+	 * categories with at least one warning
+	 */
+	public List<String> getCategories() {
+		return new ArrayList<String>(counts.keySet());
+	}
+
+	public long getCount(String category) {
+		AtomicLong count = counts.get(category);
+		return count == null ? 0 : count.get();
+	}
+}
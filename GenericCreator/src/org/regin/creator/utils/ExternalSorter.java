@@ -0,0 +1,194 @@
+package org.regin.creator.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts (key, value) records by key with bounded memory. Records are
+ * collected until the memory budget is used, then sorted and written
+ * to a temporary run file. The values are written in key order by 
+ * merging all runs. Records with the same key keep the order in which
+ * they were added.
+ * @author Thomas
+ *
+ */
+public class ExternalSorter {
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	// estimated memory of a record without its characters
+	private final static int RECORD_OVERHEAD = 96;
+
+	private long budget;
+	private long used = 0;
+	private List<String[]> records = new ArrayList<String[]>();
+	private List<File> runs = new ArrayList<File>();
+
+	private final static Comparator<String[]> BY_KEY = new Comparator<String[]>() {
+		public int compare(String[] a, String[] b) {
+			return a[0].compareTo(b[0]);
+		}
+	};
+
+	/**
+	 * @param budget bytes used for records before they are written to a run file
+	 */
+	public ExternalSorter(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * budget of 1/8 of the maximum heap
+	 */
+	public ExternalSorter() {
+		this(Math.max(1024 * 1024, Runtime.getRuntime().maxMemory() / 8));
+	}
+
+	public void add(String key, String value) throws IOException {
+		records.add(new String[] {key, value});
+		used += RECORD_OVERHEAD + 2 * (key.length() + value.length());
+		if(used >= budget) {
+			spill();
+		}
+	}
+
+	private void spill() throws IOException {
+		Collections.sort(records, BY_KEY);
+		File run = File.createTempFile("regin-sort", ".run");
+		run.deleteOnExit();
+		runs.add(run);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 65536));
+		try {
+			for(String [] r : records) {
+				writeString(out, r[0]);
+				writeString(out, r[1]);
+			}
+		} finally {
+			out.close();
+		}
+		records.clear();
+		used = 0;
+	}
+
+	/**
+	 * writes all values in key order and removes the run files
+	 */
+	public void writeSorted(Writer out) throws IOException {
+		Collections.sort(records, BY_KEY);
+		if(runs.isEmpty()) {
+			for(String [] r : records) {
+				out.write(r[1]);
+			}
+			records.clear();
+			return;
+		}
+
+		// the records in memory are the last run
+		PriorityQueue<Run> queue = new PriorityQueue<Run>();
+		List<Run> open = new ArrayList<Run>();
+		try {
+			for(int i = 0; i < runs.size(); i++) {
+				Run run = new Run(i, runs.get(i), null);
+				open.add(run);
+				if(run.next()) queue.add(run);
+			}
+			Run memory = new Run(runs.size(), null, records);
+			if(memory.next()) queue.add(memory);
+
+			while(!queue.isEmpty()) {
+				Run run = queue.poll();
+				out.write(run.value);
+				if(run.next()) queue.add(run);
+			}
+		} finally {
+			for(Run run : open) {
+				run.close();
+			}
+			for(File run : runs) {
+				run.delete();
+			}
+			runs.clear();
+			records.clear();
+		}
+	}
+
+	/**
+	 * removes the run files and records without writing them
+	 */
+	public void discard() {
+		for(File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+		records.clear();
+		used = 0;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte [] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static class Run implements Comparable<Run> {
+		int index;
+		DataInputStream in;
+		List<String[]> records;
+		int position = 0;
+		String key;
+		String value;
+
+		Run(int index, File file, List<String[]> records) throws IOException {
+			this.index = index;
+			this.records = records;
+			if(file != null) {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+			}
+		}
+
+		boolean next() throws IOException {
+			if(records != null) {
+				if(position == records.size()) return false;
+				key = records.get(position)[0];
+				value = records.get(position)[1];
+				position++;
+				return true;
+			}
+			try {
+				key = readString(in);
+			} catch (EOFException e) {
+				return false;
+			}
+			value = readString(in);
+			return true;
+		}
+
+		private static String readString(DataInputStream in) throws IOException {
+			byte [] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return new String(bytes, UTF8);
+		}
+
+		public int compareTo(Run o) {
+			int c = key.compareTo(o.key);
+			// earlier runs contain the records that were added first
+			return c != 0 ? c : index - o.index;
+		}
+
+		void close() throws IOException {
+			if(in != null) in.close();
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package org.regin.creator.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * JDK Flight Recorder events of the converter. The converter is built
+ * for Java 7, so the event types are defined at runtime with
+ * jdk.jfr.EventFactory (Java 11 or newer) through reflection. On older
+ * JVMs, or if an event type is disabled in the running recording,
+ * {@link EventType#begin()} returns null and nothing is recorded.
+ *
+ * Events are recorded by recordings started with {@link #start(File)}
+ * (--jfr) or -XX:StartFlightRecording.
+ * @author Thomas
+ *
+ */
+public class FlightRecorder {
+	private final static Logger log = Logger.getLogger(FlightRecorder.class.getName());
+	private final static String CATEGORY = "RegIN Creator";
+
+	private static Method newEvent;
+	private static Method isEnabled;
+	private static Method begin;
+	private static Method set;
+	private static Method commit;
+
+	static {
+		try {
+			Class<?> event = Class.forName("jdk.jfr.Event");
+			newEvent = Class.forName("jdk.jfr.EventFactory").getMethod("newEvent");
+			isEnabled = event.getMethod("isEnabled");
+			begin = event.getMethod("begin");
+			set = event.getMethod("set", int.class, Object.class);
+			commit = event.getMethod("commit");
+		} catch (Exception e) {
+			newEvent = null;
+		}
+	}
+
+	/**
+	 * rows that were parsed and added to the network
+	 */
+	public final static EventType ROWS = new EventType("org.regin.creator.RowBatch", "Row Batch",
+			"Rows of the input file that were parsed and added to the network",
+			new String [] {"network", "firstLine", "rows"}, new Class<?> [] {String.class, int.class, int.class});
+	/**
+	 * one IDMapper.mapID call
+	 */
+	public final static EventType LOOKUP = new EventType("org.regin.creator.MapperLookup", "Mapper Lookup",
+			"BridgeDb lookup of one identifier",
+			new String [] {"identifier", "syscodeIn", "syscodeOut", "results"}, new Class<?> [] {String.class, String.class, String.class, int.class});
+	/**
+	 * nodes and edges that were passed to a writer
+	 */
+	public final static EventType WRITE = new EventType("org.regin.creator.WriteBatch", "Write Batch",
+			"Nodes and edges written to the output file",
+			new String [] {"format", "nodes", "edges"}, new Class<?> [] {String.class, int.class, int.class});
+
+	public static class EventType {
+		private Object factory;
+
+		@SuppressWarnings("unchecked")
+		EventType(String name, String label, String description, String [] fields, Class<?> [] types) {
+			if(newEvent == null) return;
+			try {
+				Class<? extends Annotation> nameType = (Class<? extends Annotation>) Class.forName("jdk.jfr.Name");
+				Class<? extends Annotation> labelType = (Class<? extends Annotation>) Class.forName("jdk.jfr.Label");
+				Class<? extends Annotation> descriptionType = (Class<? extends Annotation>) Class.forName("jdk.jfr.Description");
+				Class<? extends Annotation> categoryType = (Class<? extends Annotation>) Class.forName("jdk.jfr.Category");
+				Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+				Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+				Constructor<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+
+				List<Object> annotations = new ArrayList<Object>();
+				annotations.add(annotation.newInstance(nameType, name));
+				annotations.add(annotation.newInstance(labelType, label));
+				annotations.add(annotation.newInstance(descriptionType, description));
+				annotations.add(annotation.newInstance(categoryType, new String [] {CATEGORY}));
+				List<Object> values = new ArrayList<Object>();
+				for(int i = 0; i < fields.length; i++) {
+					List<Object> fieldLabel = Collections.singletonList(annotation.newInstance(labelType, fields[i]));
+					values.add(valueDescriptor.newInstance(types[i], fields[i], fieldLabel));
+				}
+				factory = Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class).invoke(null, annotations, values);
+			} catch (Exception e) {
+				log.fine("Could not create event type " + name + ": " + e);
+				factory = null;
+			}
+		}
+
+		/**
+		 * @return the started event or null if the
+		 * event type is not recorded
+		 */
+		public Object begin() {
+			if(factory == null) return null;
+			try {
+				Object event = newEvent.invoke(factory);
+				if(!(Boolean) isEnabled.invoke(event)) return null;
+				begin.invoke(event);
+				return event;
+			} catch (Exception e) {
+				return null;
+			}
+		}
+
+		/**
+		 * sets the fields in the order of the event type and
+		 * commits the event, events that are null are ignored
+		 */
+		public void commit(Object event, Object... values) {
+			if(event == null) return;
+			try {
+				for(int i = 0; i < values.length; i++) {
+					set.invoke(event, i, values[i]);
+				}
+				commit.invoke(event);
+			} catch (Exception e) {
+				// the event is lost, the conversion goes on
+			}
+		}
+	}
+
+	/**
+	 * {@link #WRITE} events for every batch of nodes and edges of a writer
+	 */
+	public static class WriteBatch {
+		private String format;
+		private int size;
+		private Object event;
+		private int nodes;
+		private int edges;
+
+		public WriteBatch(String format, int size) {
+			this.format = format;
+			this.size = size;
+		}
+
+		public void addNode() {
+			if(nodes + edges == 0) event = WRITE.begin();
+			nodes++;
+			if(nodes + edges == size) commit();
+		}
+
+		public void addEdge() {
+			if(nodes + edges == 0) event = WRITE.begin();
+			edges++;
+			if(nodes + edges == size) commit();
+		}
+
+		public void commit() {
+			WRITE.commit(event, format, nodes, edges);
+			event = null;
+			nodes = 0;
+			edges = 0;
+		}
+	}
+
+	/**
+	 * starts a recording with the default settings of the JVM,
+	 * the recording is written to the file when it is stopped
+	 * @return the recording or null if JFR is not available
+	 */
+	public static Object start(File file) throws IOException {
+		if(newEvent == null) {
+			log.warning("JDK Flight Recorder is not available in this JVM (Java 11 or newer is needed).\n");
+			return null;
+		}
+		try {
+			Class<?> configuration = Class.forName("jdk.jfr.Configuration");
+			Object settings = configuration.getMethod("getConfiguration", String.class).invoke(null, "default");
+			Class<?> type = Class.forName("jdk.jfr.Recording");
+			Object recording = type.getConstructor(configuration).newInstance(settings);
+			type.getMethod("setName", String.class).invoke(recording, "regin-creator");
+			type.getMethod("setDestination", java.nio.file.Path.class).invoke(recording, file.getAbsoluteFile().toPath());
+			type.getMethod("start").invoke(recording);
+			log.info("Flight recording started, it is written to " + file + ".\n");
+			return recording;
+		} catch (Exception e) {
+			throw new IOException("Could not start flight recording: " + e, e);
+		}
+	}
+
+	/**
+	 * stops the recording and writes it to its file
+	 */
+	public static void stop(Object recording) {
+		if(recording == null) return;
+		try {
+			for(String method : Arrays.asList("stop", "close")) {
+				recording.getClass().getMethod(method).invoke(recording);
+			}
+		} catch (Exception e) {
+			log.warning("Could not write flight recording: " + e);
+		}
+	}
+}
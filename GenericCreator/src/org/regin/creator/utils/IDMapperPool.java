@@ -0,0 +1,104 @@
+package org.regin.creator.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * Thread-safe IDMapper with several read-only connections to the
+ * same BridgeDb database. Every call uses a connection that is not
+ * used by another thread at the same time.
+ * @author Thomas
+ *
+ */
+public class IDMapperPool implements IDMapper {
+
+	private List<IDMapper> connections;
+	private BlockingQueue<IDMapper> idle;
+
+	public IDMapperPool(File bridgeDb, int size) throws IDMapperException {
+		connections = new ArrayList<IDMapper>();
+		idle = new ArrayBlockingQueue<IDMapper>(size);
+		for(int i = 0; i < size; i++) {
+			IDMapper mapper = Utils.initIDMapper(bridgeDb, false);
+			if(mapper == null) {
+				close();
+				throw new IDMapperException("Could not connect to " + bridgeDb.getAbsolutePath());
+			}
+			connections.add(mapper);
+			idle.add(mapper);
+		}
+	}
+
+	private IDMapper take() throws IDMapperException {
+		try {
+			return idle.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IDMapperException(e);
+		}
+	}
+
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs, DataSource... tgtDataSources) throws IDMapperException {
+		IDMapper mapper = take();
+		try {
+			return mapper.mapID(srcXrefs, tgtDataSources);
+		} finally {
+			idle.add(mapper);
+		}
+	}
+
+	public Set<Xref> mapID(Xref ref, DataSource... tgtDataSources) throws IDMapperException {
+		IDMapper mapper = take();
+		try {
+			return mapper.mapID(ref, tgtDataSources);
+		} finally {
+			idle.add(mapper);
+		}
+	}
+
+	public boolean xrefExists(Xref xref) throws IDMapperException {
+		IDMapper mapper = take();
+		try {
+			return mapper.xrefExists(xref);
+		} finally {
+			idle.add(mapper);
+		}
+	}
+
+	public Set<Xref> freeSearch(String text, int limit) throws IDMapperException {
+		IDMapper mapper = take();
+		try {
+			return mapper.freeSearch(text, limit);
+		} finally {
+			idle.add(mapper);
+		}
+	}
+
+	public IDMapperCapabilities getCapabilities() {
+		return connections.get(0).getCapabilities();
+	}
+
+	public void close() throws IDMapperException {
+		for(IDMapper mapper : connections) {
+			mapper.close();
+		}
+		connections.clear();
+		idle.clear();
+	}
+
+	public boolean isConnected() {
+		return !connections.isEmpty();
+	}
+}
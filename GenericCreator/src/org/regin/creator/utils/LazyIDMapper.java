@@ -0,0 +1,79 @@
+package org.regin.creator.utils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * IDMapper that connects to the underlying mapper when it is used
+ * for the first time, so a database that is not needed is never opened.
+ * @author Thomas
+ *
+ */
+public abstract class LazyIDMapper implements IDMapper {
+
+	private IDMapper mapper;
+
+	/**
+	 * opens the underlying mapper
+	 */
+	protected abstract IDMapper connect() throws IDMapperException;
+
+	/**
+	 * the underlying mapper, it is opened if it was not used before
+	 */
+	public synchronized IDMapper getMapper() throws IDMapperException {
+		if(mapper == null) {
+			mapper = connect();
+		}
+		return mapper;
+	}
+
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs, DataSource... tgtDataSources) throws IDMapperException {
+		return getMapper().mapID(srcXrefs, tgtDataSources);
+	}
+
+	public Set<Xref> mapID(Xref ref, DataSource... tgtDataSources) throws IDMapperException {
+		return getMapper().mapID(ref, tgtDataSources);
+	}
+
+	public boolean xrefExists(Xref xref) throws IDMapperException {
+		return getMapper().xrefExists(xref);
+	}
+
+	public Set<Xref> freeSearch(String text, int limit) throws IDMapperException {
+		return getMapper().freeSearch(text, limit);
+	}
+
+	public IDMapperCapabilities getCapabilities() {
+		try {
+			return getMapper().getCapabilities();
+		} catch (IDMapperException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized void close() throws IDMapperException {
+		if(mapper != null) {
+			mapper.close();
+			mapper = null;
+		}
+	}
+
+	/**
+	 * true if the underlying mapper was opened
+	 */
+	public synchronized boolean isOpened() {
+		return mapper != null;
+	}
+
+	public synchronized boolean isConnected() {
+		return mapper == null || mapper.isConnected();
+	}
+}
@@ -0,0 +1,128 @@
+package org.regin.creator.utils;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive long keys to int values (open addressing, 
+ * linear probing). Keys and values are stored without boxing, 
+ * so adding an entry does not create any garbage.
+ * @author Thomas
+ *
+ */
+public class LongIntHashMap {
+	private final static float LOAD_FACTOR = 0.5f;
+
+	private long [] keys;
+	private int [] values;
+	private int size;
+	private int mask;
+	// 0 is used to mark empty slots
+	private boolean containsZero;
+	private int zeroValue;
+
+	public LongIntHashMap() {
+		this(1024);
+	}
+
+	public LongIntHashMap(int expectedSize) {
+		int capacity = 16;
+		while(capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * packs two int values (e.g. node indices) into one long
+	 */
+	public static long pack(int high, int low) {
+		return ((long) high << 32) | (low & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return the value of the key or -1 if the key is not in the map
+	 */
+	public int get(long key) {
+		if(key == 0) return containsZero ? zeroValue : -1;
+		int i = hash(key) & mask;
+		while(keys[i] != 0) {
+			if(keys[i] == key) return values[i];
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	public boolean containsKey(long key) {
+		if(key == 0) return containsZero;
+		int i = hash(key) & mask;
+		while(keys[i] != 0) {
+			if(keys[i] == key) return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public void put(long key, int value) {
+		if(key == 0) {
+			if(!containsZero) size++;
+			containsZero = true;
+			zeroValue = value;
+			return;
+		}
+		int i = hash(key) & mask;
+		while(keys[i] != 0) {
+			if(keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		if(size > keys.length * LOAD_FACTOR) {
+			rehash();
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		size = 0;
+		containsZero = false;
+	}
+
+	private void rehash() {
+		long [] oldKeys = keys;
+		int [] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		mask = keys.length - 1;
+		for(int j = 0; j < oldKeys.length; j++) {
+			long key = oldKeys[j];
+			if(key != 0) {
+				int i = hash(key) & mask;
+				while(keys[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = key;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		// finalizer of MurmurHash3
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb93e63fe1a85L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
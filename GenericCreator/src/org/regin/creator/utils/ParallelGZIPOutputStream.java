@@ -0,0 +1,113 @@
+package org.regin.creator.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream that compresses blocks of data on several threads.
+ * Every block is written as a complete gzip member, the members are
+ * written in order. A file of concatenated members is a valid gzip
+ * file that can be read with GZIPInputStream or gunzip.
+ * @author Thomas
+ *
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+	private final static int BLOCK_SIZE = 1024 * 1024;
+
+	private ExecutorService executor;
+	private LinkedList<Future<byte[]>> pending;
+	private int maxPending;
+	private byte [] block;
+	private int size;
+	private boolean closed = false;
+
+	public ParallelGZIPOutputStream(OutputStream out, int threads) {
+		super(out);
+		executor = Executors.newFixedThreadPool(threads);
+		pending = new LinkedList<Future<byte[]>>();
+		maxPending = threads * 2;
+		block = new byte[BLOCK_SIZE];
+	}
+
+	public void write(int b) throws IOException {
+		block[size++] = (byte) b;
+		if(size == block.length) {
+			submitBlock();
+		}
+	}
+
+	public void write(byte [] b, int off, int len) throws IOException {
+		while(len > 0) {
+			int n = Math.min(len, block.length - size);
+			System.arraycopy(b, off, block, size, n);
+			size += n;
+			off += n;
+			len -= n;
+			if(size == block.length) {
+				submitBlock();
+			}
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		if(size == 0) return;
+		final byte [] data = block;
+		final int length = size;
+		pending.add(executor.submit(new Callable<byte[]>() {
+			public byte[] call() throws Exception {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 4 + 64);
+				GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+				gzip.write(data, 0, length);
+				gzip.close();
+				return bytes.toByteArray();
+			}
+		}));
+		block = new byte[BLOCK_SIZE];
+		size = 0;
+		while(pending.size() >= maxPending) {
+			writeNext();
+		}
+	}
+
+	private void writeNext() throws IOException {
+		try {
+			out.write(pending.removeFirst().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * compresses and writes all data written so far
+	 */
+	public void flush() throws IOException {
+		submitBlock();
+		while(!pending.isEmpty()) {
+			writeNext();
+		}
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		try {
+			flush();
+		} finally {
+			executor.shutdownNow();
+			out.close();
+		}
+	}
+}
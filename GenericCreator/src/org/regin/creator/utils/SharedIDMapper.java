@@ -0,0 +1,53 @@
+package org.regin.creator.utils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.bridgedb.DataSource;
+import org.bridgedb.IDMapper;
+import org.bridgedb.IDMapperCapabilities;
+import org.bridgedb.IDMapperException;
+import org.bridgedb.Xref;
+
+/**
+ * IDMapper that is used by several conversions. Closing it does
+ * not close the underlying mapper, this is up to its owner.
+ * @author Thomas
+ *
+ */
+public class SharedIDMapper implements IDMapper {
+
+	private IDMapper mapper;
+
+	public SharedIDMapper(IDMapper mapper) {
+		this.mapper = mapper;
+	}
+
+	public Map<Xref, Set<Xref>> mapID(Collection<Xref> srcXrefs, DataSource... tgtDataSources) throws IDMapperException {
+		return mapper.mapID(srcXrefs, tgtDataSources);
+	}
+
+	public Set<Xref> mapID(Xref ref, DataSource... tgtDataSources) throws IDMapperException {
+		return mapper.mapID(ref, tgtDataSources);
+	}
+
+	public boolean xrefExists(Xref xref) throws IDMapperException {
+		return mapper.xrefExists(xref);
+	}
+
+	public Set<Xref> freeSearch(String text, int limit) throws IDMapperException {
+		return mapper.freeSearch(text, limit);
+	}
+
+	public IDMapperCapabilities getCapabilities() {
+		return mapper.getCapabilities();
+	}
+
+	public void close() throws IDMapperException {
+	}
+
+	public boolean isConnected() {
+		return mapper.isConnected();
+	}
+}
@@ -0,0 +1,76 @@
+package org.regin.creator.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Splits tab-delimited lines like String.split("\t") but only creates
+ * strings for the columns that are used, all other fields are null.
+ * Invalid XML characters are removed from the returned fields, 
+ * fields without such characters are not copied again.
+ * The field offsets are kept in buffers that are reused for every
+ * line, so a tokenizer must not be shared between threads.
+ * @author Thomas
+ *
+ */
+public class TabTokenizer {
+
+	private boolean [] projected;
+	private int [] starts = new int[64];
+	private int [] ends = new int[64];
+
+	/**
+	 * @param columns columns (starting with 0) that should be returned
+	 */
+	public TabTokenizer(Collection<Integer> columns) {
+		int max = -1;
+		for(Integer c : columns) {
+			if(c != null) max = Math.max(max, c);
+		}
+		projected = new boolean[max + 1];
+		for(Integer c : columns) {
+			if(c != null) projected[c] = true;
+		}
+	}
+
+	/**
+	 * @return array with one entry per field (trailing empty fields are
+	 * removed as in String.split), fields of unused columns are null
+	 */
+	public String [] tokenize(String line) {
+		int fields = 0;
+		int start = 0;
+		int length = line.length();
+		while(true) {
+			int end = line.indexOf('\t', start);
+			if(end == -1) end = length;
+			if(fields == starts.length) {
+				starts = Arrays.copyOf(starts, fields * 2);
+				ends = Arrays.copyOf(ends, fields * 2);
+			}
+			starts[fields] = start;
+			ends[fields] = end;
+			fields++;
+			if(end == length) break;
+			start = end + 1;
+		}
+		if(length > 0) {
+			while(fields > 0 && starts[fields - 1] == ends[fields - 1]) {
+				fields--;
+			}
+		}
+
+		String [] row = new String[fields];
+		int columns = Math.min(fields, projected.length);
+		for(int i = 0; i < columns; i++) {
+			if(projected[i]) {
+				if(Utils.isValidXML(line, starts[i], ends[i])) {
+					row[i] = line.substring(starts[i], ends[i]);
+				} else {
+					row[i] = Utils.removeInvalidXMLCharacters(line.substring(starts[i], ends[i]));
+				}
+			}
+		}
+		return row;
+	}
+}
@@ -1,11 +1,25 @@
 package org.regin.creator.utils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
+import java.util.zip.GZIPInputStream;
 
 import org.bridgedb.BridgeDb;
 import org.bridgedb.IDMapper;
@@ -14,12 +28,85 @@ import org.bridgedb.bio.BioDataSource;
 
 public class Utils {
 
-	public static void setUpLogger(Logger log, File logFile, boolean append) throws SecurityException, IOException {
+	/**
+	 * default number of threads that compress or render one output file, 
+	 * one per available processor. Batch conversions pass a smaller number
+	 * to the writers of each job.
+	 */
+	public static int getOutputThreads() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	public static FileHandler setUpLogger(Logger log, File logFile, boolean append) throws SecurityException, IOException {
 		FileHandler fh = new FileHandler(logFile.getAbsolutePath(), append);
 		log.addHandler(fh);
 		log.setLevel(Level.ALL);
 		SimpleFormatter formatter = new SimpleFormatter();
 		fh.setFormatter(formatter);
+		return fh;
+	}
+
+	/**
+	 * files with the extension .gz are read and written gzip compressed
+	 */
+	public static boolean isCompressed(File file) {
+		return file.getName().toLowerCase().endsWith(".gz");
+	}
+
+	/**
+	 * opens a reader for plain or gzip compressed files
+	 * (default charset as FileReader)
+	 */
+	public static BufferedReader openReader(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(openInputStream(file)));
+	}
+
+	/**
+	 * opens a byte stream for plain or gzip compressed files, e.g. for 
+	 * XML files that declare their own encoding
+	 */
+	public static InputStream openInputStream(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		if(isCompressed(file)) {
+			return new GZIPInputStream(in, 65536);
+		}
+		return new BufferedInputStream(in, 65536);
+	}
+
+	/**
+	 * opens a writer for plain or gzip compressed files, 
+	 * compression uses {@link #getOutputThreads()} threads
+	 */
+	public static PrintWriter openWriter(File file) throws IOException {
+		return openWriter(file, getOutputThreads());
+	}
+
+	/**
+	 * @param threads threads that compress the file
+	 */
+	public static PrintWriter openWriter(File file, int threads) throws IOException {
+		if(isCompressed(file)) {
+			return new PrintWriter(new BufferedWriter(new OutputStreamWriter(openStream(file, threads))));
+		}
+		return new PrintWriter(file);
+	}
+
+	/**
+	 * opens a byte stream for plain or gzip compressed files, 
+	 * text has to be encoded with the default charset as in openWriter
+	 */
+	public static OutputStream openStream(File file) throws IOException {
+		return openStream(file, getOutputThreads());
+	}
+
+	/**
+	 * @param threads threads that compress the file
+	 */
+	public static OutputStream openStream(File file, int threads) throws IOException {
+		if(isCompressed(file)) {
+			return new ParallelGZIPOutputStream(new FileOutputStream(file), threads);
+		}
+		return new BufferedOutputStream(new FileOutputStream(file), 65536);
 	}
 
 	public static IDMapper initIDMapper(File file, boolean transitive) {
@@ -38,4 +125,98 @@ public class Utils {
 		}
 	}
 
+	/**
+	 * opens a single connection or a pool of connections
+	 * if more than one connection is requested
+	 */
+	public static IDMapper connectIDMapper(File file, int connections) throws IDMapperException {
+		if(connections > 1) {
+			return new IDMapperPool(file, connections);
+		}
+		IDMapper mapper = initIDMapper(file, false);
+		if(mapper == null) {
+			throw new IDMapperException("Could not connect to " + file.getAbsolutePath());
+		}
+		return mapper;
+	}
+
+	/**
+	 * MD5 checksum of the file as hex string
+	 */
+	public static String checksum(File file) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		InputStream in = new FileInputStream(file);
+		byte [] buffer = new byte[65536];
+		int read;
+		while((read = in.read(buffer)) != -1) {
+			md.update(buffer, 0, read);
+		}
+		in.close();
+		StringBuilder hex = new StringBuilder();
+		for(byte b : md.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Removes all invalid Unicode characters that are not suitable to be used
+	 * either in markup or text inside XML Documents.
+	 * Returns s itself if it does not contain any invalid characters.
+	 * 
+	 * Based on these recommendations
+	 * http://www.w3.org/TR/2000/REC-xml-20001006#NT-Char
+	 * http://cse-mjmcl.cse.bris.ac.uk/blog/2007/02/14/1171465494443.html
+	 * 
+	 * @param s: The resultant String stripped of the offending characters!
+	 * @return
+	 */
+	public static String removeInvalidXMLCharacters(String s) {
+		if(isValidXML(s, 0, s.length())) {
+			return s;
+		}
+		StringBuilder out = new StringBuilder();
+
+		int codePoint;
+		int i = 0;
+
+		while (i < s.length()) {
+			// This is the unicode code of the character.
+			codePoint = s.codePointAt(i);
+			if ((codePoint == 0x9) || (codePoint == 0xA) || (codePoint == 0xD)
+					|| ((codePoint >= 0x20) && (codePoint <= 0xD7FF))
+					|| ((codePoint >= 0xE000) && (codePoint <= 0xFFFD))
+					|| ((codePoint >= 0x10000) && (codePoint <= 0x10FFFF))) {
+				out.append(Character.toChars(codePoint));
+			}
+			i += Character.charCount(codePoint);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * checks the characters from start (inclusive) to end (exclusive) 
+	 * without creating any objects
+	 * @return true if there are no characters that are invalid in XML
+	 */
+	public static boolean isValidXML(CharSequence s, int start, int end) {
+		for(int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if(c >= 0x20 && c <= 0xD7FF) continue;
+			if(c == 0x9 || c == 0xA || c == 0xD) continue;
+			if(c >= 0xE000 && c <= 0xFFFD) continue;
+			// only complete surrogate pairs are valid
+			if(Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+				i++;
+				continue;
+			}
+			return false;
+		}
+		return true;
+	}
 }
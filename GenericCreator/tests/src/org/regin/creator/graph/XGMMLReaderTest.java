@@ -0,0 +1,130 @@
+package org.regin.creator.graph;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.regin.creator.graph.Graph.Edge;
+import org.regin.creator.graph.Graph.Node;
+
+/**
+ * Writes a small network as XGMML and reads it back with 
+ * {@link XGMMLReader#read(File)} and {@link XGMMLReader#filter}.
+ * Runs without a test framework, a failed check throws an AssertionError.
+ * @author Thomas
+ *
+ */
+public class XGMMLReaderTest {
+
+	public static void main(String [] args) throws Exception {
+		File dir = File.createTempFile("xgmml", "");
+		dir.delete();
+		dir.mkdir();
+		try {
+			File file = new File(dir, "network.xgmml");
+			GraphWriters.write(network(), Collections.<GraphWriter, File>singletonMap(new XGMMLWriter(1), file));
+			testRead(file);
+			testFilter(file, new File(dir, "filtered.xgmml"));
+			testFilterRejectsWriter(file, new BinaryGraphWriter(), new File(dir, "filtered.regin"));
+			testFilterRejectsWriter(file, new EdgeListWriter(), new File(dir, "filtered.tsv"));
+			System.out.println("XGMMLReaderTest passed.");
+		} finally {
+			for(File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	private static Graph network() {
+		Graph graph = new Graph();
+		graph.setTitle("test");
+		String [] ids = {"hsa-mir-1", "ENSG1", "ENSG2"};
+		for(String id : ids) {
+			Node node = graph.addNode(id);
+			node.setAttribute("label", id.toLowerCase());
+			node.setAttribute("type", id.startsWith("hsa") ? "miRNA" : "gene");
+		}
+		for(int i = 1; i < ids.length; i++) {
+			Edge edge = graph.addEdge(graph.getNode(ids[0]), graph.getNode(ids[i]));
+			edge.setAttribute("score", "0." + i);
+			edge.setAttribute("interaction", "miRNA-target");
+		}
+		return graph;
+	}
+
+	private static void testRead(File file) throws Exception {
+		Graph expected = network();
+		Graph graph = XGMMLReader.read(file);
+		check(graph.getNodeCount() == expected.getNodeCount(), "node count " + graph.getNodeCount());
+		check(graph.getEdgeCount() == expected.getEdgeCount(), "edge count " + graph.getEdgeCount());
+		for(Node n : expected.getNodes()) {
+			Node node = graph.getNode(n.getId());
+			check(node != null, "node " + n.getId());
+			for(String name : n.getAttributeNames()) {
+				checkEquals(n.getAttribute(name), node.getAttribute(name), n.getId() + " " + name);
+			}
+		}
+		for(int i = 0; i < expected.getEdgeCount(); i++) {
+			Edge e = expected.getEdge(i);
+			Edge edge = graph.getEdge(i);
+			checkEquals(e.getSrc().getId(), edge.getSrc().getId(), "source of edge " + i);
+			checkEquals(e.getTgt().getId(), edge.getTgt().getId(), "target of edge " + i);
+			for(String name : e.getAttributeNames()) {
+				checkEquals(e.getAttribute(name), edge.getAttribute(name), "edge " + i + " " + name);
+			}
+		}
+	}
+
+	/**
+	 * removes ENSG1, its edge has to be removed as well
+	 */
+	private static void testFilter(File file, File output) throws Exception {
+		int [] counts = XGMMLReader.filter(file, new XGMMLReader.Filter() {
+			public boolean acceptNode(Node node) {
+				return !node.getId().equals("ENSG1");
+			}
+
+			public boolean acceptEdge(Edge edge) {
+				return true;
+			}
+		}, new XGMMLWriter(1), output);
+		check(counts[0] == 2 && counts[1] == 1, "filter counts " + counts[0] + ", " + counts[1]);
+
+		Graph graph = XGMMLReader.read(output);
+		check(graph.getNodeCount() == 2, "filtered node count " + graph.getNodeCount());
+		check(graph.getNode("ENSG1") == null, "ENSG1 is filtered");
+		checkEquals("gene", graph.getNode("ENSG2").getAttribute("type"), "ENSG2 type");
+		check(graph.getEdgeCount() == 1, "filtered edge count " + graph.getEdgeCount());
+		Edge edge = graph.getEdge(0);
+		checkEquals("ENSG2", edge.getTgt().getId(), "filtered edge target");
+		checkEquals("0.2", edge.getAttribute("score"), "filtered edge score");
+	}
+
+	private static void testFilterRejectsWriter(File file, GraphWriter writer, File output) throws Exception {
+		try {
+			XGMMLReader.filter(file, new XGMMLReader.Filter() {
+				public boolean acceptNode(Node node) {
+					return true;
+				}
+
+				public boolean acceptEdge(Edge edge) {
+					return true;
+				}
+			}, writer, output);
+			throw new AssertionError(writer.getFormat() + " writer was not rejected");
+		} catch (IllegalArgumentException e) {
+			check(!output.exists(), writer.getFormat() + " output was created");
+		}
+	}
+
+	private static void checkEquals(Object expected, Object actual, String message) {
+		check(expected == null ? actual == null : expected.toString().equals(String.valueOf(actual)), 
+				message + ": expected " + expected + ", got " + actual);
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package org.regin.creator.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.regin.creator.graph.Graph.Edge;
+import org.regin.creator.graph.Graph.Node;
+import org.regin.creator.utils.ExternalSorter;
+
+/**
+ * Checks that the temporary files of {@link XGMMLStreamWriter} and
+ * {@link ExternalSorter} are removed after close, after a failed close 
+ * and after abort. The temporary directory of the JVM is replaced by
+ * an empty directory, so it has to be set before any temporary file
+ * is created.
+ * @author Thomas
+ *
+ */
+public class XGMMLStreamWriterTest {
+
+	private static File tmp;
+
+	public static void main(String [] args) throws Exception {
+		tmp = new File(System.getProperty("java.io.tmpdir"), "regin-test-" + System.nanoTime());
+		tmp.mkdirs();
+		System.setProperty("java.io.tmpdir", tmp.getAbsolutePath());
+		try {
+			testClose(false);
+			testClose(true);
+			testFailedClose();
+			testAbort(false);
+			testAbort(true);
+			testDiscard();
+			System.out.println("XGMMLStreamWriterTest passed.");
+		} finally {
+			for(File f : tmp.listFiles()) {
+				f.delete();
+			}
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * writer that fails once failing is set
+	 */
+	private static class FailingWriter extends StringWriter {
+		boolean failing = false;
+
+		public void write(String str) {
+			if(failing) throw new IllegalStateException("disk full");
+			super.write(str);
+		}
+
+		public void write(char [] cbuf, int off, int len) {
+			if(failing) throw new IllegalStateException("disk full");
+			super.write(cbuf, off, len);
+		}
+
+		public void flush() {
+			if(failing) throw new IllegalStateException("disk full");
+		}
+	}
+
+	private static XGMMLStreamWriter write(Writer out, boolean sorted) throws Exception {
+		Graph graph = new Graph();
+		graph.setTitle("test");
+		graph.setStoreEdges(false);
+		XGMMLStreamWriter writer = new XGMMLStreamWriter(graph, out, sorted);
+		Node a = graph.addNode("b");
+		Node b = graph.addNode("a");
+		writer.writeNode(a);
+		writer.writeNode(b);
+		Edge edge = graph.addEdge(a, b);
+		writer.writeEdge(edge);
+		return writer;
+	}
+
+	private static void testClose(boolean sorted) throws Exception {
+		StringWriter out = new StringWriter();
+		write(out, sorted).close();
+		String xgmml = out.toString();
+		check(xgmml.endsWith("</graph>"), "graph element is closed");
+		check(xgmml.indexOf("<node") < xgmml.indexOf("<edge"), "nodes before edges");
+		if(sorted) {
+			check(xgmml.indexOf("id=\"a\"") < xgmml.indexOf("id=\"b\""), "nodes sorted by id");
+		}
+		checkEmpty("close" + (sorted ? " sorted" : ""));
+	}
+
+	private static void testFailedClose() throws Exception {
+		FailingWriter out = new FailingWriter();
+		XGMMLStreamWriter writer = write(out, false);
+		out.failing = true;
+		try {
+			writer.close();
+			throw new AssertionError("close did not fail");
+		} catch (IllegalStateException e) {
+			checkEmpty("failed close");
+		}
+	}
+
+	private static void testAbort(boolean sorted) throws Exception {
+		XGMMLStreamWriter writer = write(new StringWriter(), sorted);
+		if(!sorted) {
+			check(tmp.list().length == 1, "edge file exists before abort");
+		}
+		writer.abort();
+		checkEmpty("abort" + (sorted ? " sorted" : ""));
+		// abort after close or a second abort does nothing
+		writer.abort();
+	}
+
+	/**
+	 * a sorter with a budget of one byte spills every record
+	 */
+	private static void testDiscard() throws IOException {
+		ExternalSorter sorter = new ExternalSorter(1);
+		sorter.add("b", "2");
+		sorter.add("a", "1");
+		check(tmp.list().length == 2, "two run files, found " + tmp.list().length);
+		sorter.discard();
+		checkEmpty("discard");
+	}
+
+	private static void checkEmpty(String message) {
+		check(tmp.list().length == 0, message + ": temporary files left " + Arrays.toString(tmp.list()));
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}
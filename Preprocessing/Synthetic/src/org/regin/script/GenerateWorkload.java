@@ -0,0 +1,339 @@
+package org.regin.script;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a synthetic miRNA - gene interaction file, a matching config
+ * file and optionally a BridgeDb Derby database for the genes, so
+ * conversions of any size can be run without the original data.
+ * The same arguments (and seed) always give the same files.
+ *
+ * Rows: miRNA id, miRNA label, Ensembl gene id, gene symbol, score,
+ * p-value and a number of text columns. The miRNA of a row is drawn
+ * from a Zipf distribution (a few hub miRNAs with many targets), the
+ * gene uniformly. Duplicate rows repeat one of the last 65536 pairs.
+ *
+ * The database maps every gene (En) to an Entrez id (L) and a
+ * symbol (H), it needs derby.jar on the classpath.
+ *
+ * Usage: GenerateWorkload output-dir [--option value ...]
+ * @author Thomas
+ *
+ */
+public class GenerateWorkload {
+
+	private final static int RECENT = 65536;
+	private final static char [] INVALID = {'\u0001', '\u0008', '\u000B', '\u001F', '\uFFFE'};
+
+	private static Map<String, String> defaults() {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("name", "synthetic");
+		options.put("rows", "100000");
+		options.put("mirnas", "1000");
+		options.put("genes", "20000");
+		// exponent of the Zipf distribution of the miRNAs, 0 = uniform
+		options.put("skew", "1.0");
+		options.put("columns", "3");
+		options.put("width", "8");
+		options.put("duplicates", "0.05");
+		options.put("invalid", "0.001");
+		options.put("seed", "1");
+		options.put("bridgedb", "false");
+		return options;
+	}
+
+	public static void main(String [] args) throws Exception {
+		Map<String, String> options = defaults();
+		if(args.length == 0 || args.length % 2 == 0) {
+			printUsage(options);
+			return;
+		}
+		for(int i = 1; i < args.length; i += 2) {
+			String key = args[i].replaceFirst("^--", "");
+			if(!options.containsKey(key)) {
+				printUsage(options);
+				return;
+			}
+			options.put(key, args[i + 1]);
+		}
+		File dir = new File(args[0]);
+		dir.mkdirs();
+		String name = options.get("name");
+		GenerateWorkload generator = new GenerateWorkload(options);
+
+		long start = System.currentTimeMillis();
+		File bridgeDb = null;
+		if(Boolean.parseBoolean(options.get("bridgedb"))) {
+			bridgeDb = new File(dir, name + ".bridge");
+			generator.writeBridgeDb(bridgeDb);
+		}
+		generator.writeConfig(new File(dir, name + ".config"), bridgeDb);
+		generator.writeInput(new File(dir, name + ".txt"));
+		System.out.println("Generated " + options.get("rows") + " rows in " + (System.currentTimeMillis() - start) / 1000.0 + " s.");
+	}
+
+	private static void printUsage(Map<String, String> options) {
+		System.out.println("Usage: GenerateWorkload output-dir [--option value ...]");
+		String [] keys = options.keySet().toArray(new String[0]);
+		Arrays.sort(keys);
+		for(String key : keys) {
+			System.out.println("\t--" + key + " (default " + options.get(key) + ")");
+		}
+	}
+
+	private String name;
+	private long rows;
+	private int mirnas;
+	private int genes;
+	private int columns;
+	private int width;
+	private double duplicates;
+	private double invalid;
+	private Random random;
+	private double [] cumulative;
+
+	public GenerateWorkload(Map<String, String> options) {
+		name = options.get("name");
+		rows = Long.parseLong(options.get("rows"));
+		mirnas = Integer.parseInt(options.get("mirnas"));
+		genes = Integer.parseInt(options.get("genes"));
+		columns = Integer.parseInt(options.get("columns"));
+		width = Integer.parseInt(options.get("width"));
+		duplicates = Double.parseDouble(options.get("duplicates"));
+		invalid = Double.parseDouble(options.get("invalid"));
+		random = new Random(Long.parseLong(options.get("seed")));
+
+		double skew = Double.parseDouble(options.get("skew"));
+		cumulative = new double[mirnas];
+		double sum = 0;
+		for(int i = 0; i < mirnas; i++) {
+			sum += 1 / Math.pow(i + 1, skew);
+			cumulative[i] = sum;
+		}
+		for(int i = 0; i < mirnas; i++) {
+			cumulative[i] /= sum;
+		}
+	}
+
+	private int nextMirna() {
+		int i = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min(mirnas - 1, i < 0 ? -i - 1 : i);
+	}
+
+	static String geneId(int gene) {
+		return String.format("ENSG%011d", gene);
+	}
+
+	public void writeInput(File file) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+		try {
+			writer.write("mirna\tmirna_label\tgene\tgene_symbol\tscore\tpvalue");
+			for(int c = 0; c < columns; c++) {
+				writer.write("\tattribute" + c);
+			}
+			writer.write("\n");
+
+			int [] recentMirnas = new int[RECENT];
+			int [] recentGenes = new int[RECENT];
+			int recent = 0;
+			StringBuilder line = new StringBuilder();
+			for(long r = 0; r < rows; r++) {
+				int mirna;
+				int gene;
+				if(recent > 0 && random.nextDouble() < duplicates) {
+					int i = random.nextInt(Math.min(recent, RECENT));
+					mirna = recentMirnas[i];
+					gene = recentGenes[i];
+				} else {
+					mirna = nextMirna();
+					gene = random.nextInt(genes);
+					recentMirnas[recent % RECENT] = mirna;
+					recentGenes[recent % RECENT] = gene;
+					recent++;
+				}
+				line.setLength(0);
+				line.append("hsa-mir-").append(mirna).append('\t');
+				line.append("miR-").append(mirna).append('\t');
+				line.append(geneId(gene)).append('\t');
+				line.append("GENE").append(gene).append('\t');
+				line.append(random.nextInt(1000) / 1000.0).append('\t');
+				line.append(random.nextInt(10000) / 10000.0);
+				for(int c = 0; c < columns; c++) {
+					line.append('\t');
+					appendText(line);
+				}
+				line.append('\n');
+				writer.write(line.toString());
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * random lower case text of the configured width,
+	 * sometimes with an invalid XML character
+	 */
+	private void appendText(StringBuilder line) {
+		int start = line.length();
+		for(int i = 0; i < width; i++) {
+			line.append((char) ('a' + random.nextInt(26)));
+		}
+		if(width > 0 && random.nextDouble() < invalid) {
+			line.setCharAt(start + random.nextInt(width), INVALID[random.nextInt(INVALID.length)]);
+		}
+	}
+
+	/**
+	 * config in the format of template.config, the genes are
+	 * mapped if a database is given
+	 */
+	public void writeConfig(File file, File bridgeDb) throws IOException {
+		StringBuilder edgeColumns = new StringBuilder("4,5");
+		for(int c = 0; c < columns; c++) {
+			edgeColumns.append(",").append(6 + c);
+		}
+		PrintWriter writer = new PrintWriter(file, "UTF-8");
+		writer.println("name=" + name);
+		writer.println("organism=hsa");
+		writer.println("version=1");
+		writer.println("source_columns=1");
+		writer.println("target_columns=3");
+		writer.println("edge_columns=" + edgeColumns);
+		writer.println("interaction_type=miRNA-target");
+		writer.println("source_id_column=0");
+		writer.println("source_type=miRNA");
+		writer.println("source_bridgedb=");
+		writer.println("source_syscode_in=");
+		writer.println("source_syscodes_out=");
+		writer.println("source_label_column=1");
+		writer.println("target_id_column=2");
+		writer.println("target_type=gene");
+		writer.println("target_bridgedb=" + (bridgeDb == null ? "" : bridgeDb.getAbsolutePath()));
+		writer.println("target_syscode_in=" + (bridgeDb == null ? "" : "En"));
+		writer.println("target_syscodes_out=" + (bridgeDb == null ? "" : "L,H"));
+		writer.println("target_label_column=3");
+		writer.close();
+	}
+
+	/**
+	 * creates a Derby database with the BridgeDb schema in a temporary
+	 * directory and zips it into a .bridge file
+	 */
+	public void writeBridgeDb(File file) throws Exception {
+		Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+		File tmp = File.createTempFile("bridgedb", "");
+		tmp.delete();
+		tmp.mkdir();
+		File database = new File(tmp, "database");
+		Connection con = DriverManager.getConnection("jdbc:derby:" + database.getAbsolutePath() + ";create=true");
+		try {
+			Statement st = con.createStatement();
+			st.execute("CREATE TABLE info (schemaversion INTEGER PRIMARY KEY, builddate INTEGER, datasourcename VARCHAR(100), " +
+					"datasourceversion VARCHAR(100), series VARCHAR(100), datatype VARCHAR(100))");
+			st.execute("INSERT INTO info VALUES (3, 20160101, '" + name + "', '1', 'synthetic', 'GeneProduct')");
+			st.execute("CREATE TABLE link (idLeft VARCHAR(50) NOT NULL, codeLeft VARCHAR(50) NOT NULL, idRight VARCHAR(50) NOT NULL, " +
+					"codeRight VARCHAR(50) NOT NULL, bridge VARCHAR(50), PRIMARY KEY (idLeft, codeLeft, idRight, codeRight))");
+			st.execute("CREATE TABLE datanode (id VARCHAR(50), code VARCHAR(50), PRIMARY KEY (id, code))");
+			st.execute("CREATE TABLE attribute (id VARCHAR(50), code VARCHAR(50), attrname VARCHAR(50), attrvalue VARCHAR(255))");
+			st.close();
+
+			con.setAutoCommit(false);
+			PreparedStatement datanode = con.prepareStatement("INSERT INTO datanode VALUES (?, 'En')");
+			PreparedStatement link = con.prepareStatement("INSERT INTO link VALUES (?, 'En', ?, ?, NULL)");
+			for(int gene = 0; gene < genes; gene++) {
+				String id = geneId(gene);
+				datanode.setString(1, id);
+				datanode.addBatch();
+				String [][] xrefs = {{id, "En"}, {"" + (gene + 1), "L"}, {"GENE" + gene, "H"}};
+				for(String [] xref : xrefs) {
+					link.setString(1, id);
+					link.setString(2, xref[0]);
+					link.setString(3, xref[1]);
+					link.addBatch();
+				}
+				if(gene % 10000 == 9999) {
+					datanode.executeBatch();
+					link.executeBatch();
+				}
+			}
+			datanode.executeBatch();
+			link.executeBatch();
+			con.commit();
+			// the indices of BridgeDb databases
+			st = con.createStatement();
+			st.execute("CREATE INDEX i_codeLeft ON link(codeLeft)");
+			st.execute("CREATE INDEX i_idRight ON link(idRight)");
+			st.execute("CREATE INDEX i_codeRight ON link(codeRight)");
+			st.execute("CREATE INDEX i_code ON datanode(code)");
+			st.close();
+			con.commit();
+		} finally {
+			con.close();
+		}
+		try {
+			DriverManager.getConnection("jdbc:derby:" + database.getAbsolutePath() + ";shutdown=true");
+		} catch (SQLException e) {
+			// expected, shutdown always throws
+		}
+
+		ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			zip(zip, database, "database/");
+		} finally {
+			zip.close();
+		}
+		delete(tmp);
+	}
+
+	private void zip(ZipOutputStream zip, File dir, String path) throws IOException {
+		zip.putNextEntry(new ZipEntry(path));
+		zip.closeEntry();
+		File [] files = dir.listFiles();
+		Arrays.sort(files);
+		byte [] buffer = new byte[65536];
+		for(File f : files) {
+			if(f.isDirectory()) {
+				zip(zip, f, path + f.getName() + "/");
+			} else {
+				zip.putNextEntry(new ZipEntry(path + f.getName()));
+				InputStream in = new FileInputStream(f);
+				int n;
+				while((n = in.read(buffer)) != -1) {
+					zip.write(buffer, 0, n);
+				}
+				in.close();
+				zip.closeEntry();
+			}
+		}
+	}
+
+	private void delete(File file) {
+		File [] files = file.listFiles();
+		if(files != null) {
+			for(File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}